@@ -0,0 +1,61 @@
+package jpabook.jpashop.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * load.properties 기본값 + -Dload.* 시스템 프로퍼티
+ */
+class LoadConfig {
+    private static final String MIX_PREFIX = "load.mix.";
+
+    final String mode;
+    final int threads;
+    final int rate;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final String out;
+    final Map<String, Integer> mix = new LinkedHashMap<>();
+
+    private LoadConfig(Properties properties) {
+        this.mode = properties.getProperty("load.mode", "open");
+        this.threads = Integer.parseInt(properties.getProperty("load.threads", "32"));
+        this.rate = Integer.parseInt(properties.getProperty("load.rate", "200"));
+        this.warmupSeconds = Integer.parseInt(properties.getProperty("load.warmup", "10"));
+        this.durationSeconds = Integer.parseInt(properties.getProperty("load.duration", "60"));
+        this.out = properties.getProperty("load.out", "build/load/summary.json");
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(MIX_PREFIX)) {
+                int weight = Integer.parseInt(properties.getProperty(key));
+                if (weight > 0) {
+                    mix.put(key.substring(MIX_PREFIX.length()), weight);
+                }
+            }
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("load.rate 는 0보다 커야 합니다.");
+        }
+    }
+
+    static LoadConfig load() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = LoadConfig.class.getResourceAsStream("/load.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("load.")) {
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+        return new LoadConfig(properties);
+    }
+
+    boolean isOpen() {
+        return "open".equals(mode);
+    }
+}
@@ -0,0 +1,219 @@
+package jpabook.jpashop.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jpabook.jpashop.JpashopApplication;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 부하 생성기
+ *
+ * 앱을 같은 프로세스에서 띄우고(내장 톰캣, 메모리 H2) load.properties 의 트래픽 믹스를 재생한다.
+ *  open   : 전체 rate 로 요청 시작시각을 미리 정해두고 스레드들이 차례대로 가져간다. (constant arrival rate)
+ *  closed : 스레드마다 threads/rate 간격으로 요청한다. 응답이 늦으면 다음 요청도 늦어진다.
+ * 두 방식 모두 지연시간은 실제 전송시각이 아니라 예정된 시작시각부터 잰다. (coordinated omission 보정)
+ * 결과는 load.out 에 JSON 으로 남겨서 실행간 비교한다.
+ */
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+    private static final int SEED_MEMBERS = 10;
+    private static final int SEED_ITEMS = 20;
+
+    private final LoadConfig config;
+    private final List<Route> routes;
+    private final int totalWeight;
+    private final HttpClient client;
+
+    LoadGenerator(LoadConfig config, List<Route> routes) {
+        this.config = config;
+        this.routes = routes;
+        this.totalWeight = routes.stream().mapToInt(r -> r.weight).sum();
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.load();
+        ConfigurableApplicationContext context = SpringApplication.run(JpashopApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--logging.level.org.hibernate.SQL=warn",
+                "--decorator.datasource.p6spy.enable-logging=false");
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<Long> memberIds = seedMembers(context.getBean(MemberService.class));
+            List<Long> itemIds = seedItems(context.getBean(ItemService.class));
+            LoadGenerator generator = new LoadGenerator(config, routes(config, "http://localhost:" + port, memberIds, itemIds));
+
+            log.info("warmup {}s", config.warmupSeconds);
+            generator.run(config.warmupSeconds);
+            generator.routes.forEach(Route::reset);
+
+            log.info("{} mode, rate={}/s, threads={}, {}s", config.mode, config.rate, config.threads, config.durationSeconds);
+            double seconds = generator.run(config.durationSeconds);
+            generator.writeSummary(seconds);
+        } finally {
+            context.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * @return 실제 측정 시간(초)
+     */
+    double run(int durationSeconds) throws InterruptedException {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / config.rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        AtomicLong ticket = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(config.threads);
+        for (int t = 0; t < config.threads; t++) {
+            int worker = t;
+            workers.execute(() -> {
+                long n = 0;
+                while (true) {
+                    long intended = config.isOpen()
+                            ? start + ticket.getAndIncrement() * periodNanos
+                            : start + worker * periodNanos + (n++) * periodNanos * config.threads;
+                    if (intended >= end) {
+                        return;
+                    }
+                    sleepUntil(intended);
+                    Route route = pick();
+                    boolean success = send(route.newRequest());
+                    route.record(System.nanoTime() - intended, success);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(durationSeconds + 600L, TimeUnit.SECONDS);
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private boolean send(HttpRequest request) {
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private Route pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Route route : routes) {
+            r -= route.weight;
+            if (r < 0) {
+                return route;
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private void writeSummary(double seconds) throws Exception {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("timestamp", Instant.now().toString());
+        summary.put("mode", config.mode);
+        summary.put("rate", config.rate);
+        summary.put("threads", config.threads);
+        summary.put("seconds", seconds);
+        summary.put("requests", routes.stream().mapToLong(Route::count).sum());
+        Map<String, Object> byRoute = new LinkedHashMap<>();
+        for (Route route : routes) {
+            byRoute.put(route.name, route.summary(seconds));
+        }
+        summary.put("routes", byRoute);
+
+        File out = new File(config.out);
+        out.getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, summary);
+        log.info("summary written to {}", out.getAbsolutePath());
+    }
+
+    private static List<Route> routes(LoadConfig config, String base, List<Long> memberIds, List<Long> itemIds) {
+        Map<String, Function<ThreadLocalRandom, HttpRequest>> factories = new LinkedHashMap<>();
+        factories.put("items", r -> get(base + "/items"));
+        factories.put("orders", r -> get(base + "/orders"));
+        factories.put("order", r -> HttpRequest.newBuilder(URI.create(base + "/order"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "memberId=" + memberIds.get(r.nextInt(memberIds.size())) +
+                        "&itemId=" + itemIds.get(r.nextInt(itemIds.size())) +
+                        "&count=1"))
+                .build());
+        for (String version : List.of("v1", "v2", "v3", "v3.1", "v4", "v5", "v6")) {
+            factories.put("api-" + version + "-orders", r -> get(base + "/api/" + version + "/orders"));
+        }
+
+        List<Route> routes = new ArrayList<>();
+        config.mix.forEach((name, weight) -> {
+            if (!factories.containsKey(name)) {
+                throw new IllegalArgumentException("알 수 없는 요청: " + name);
+            }
+            routes.add(new Route(name, weight, factories.get(name)));
+        });
+        return routes;
+    }
+
+    private static HttpRequest get(String uri) {
+        return HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofSeconds(30)).GET().build();
+    }
+
+    private static List<Long> seedMembers(MemberService memberService) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < SEED_MEMBERS; i++) {
+            Member member = new Member();
+            member.setName("load-" + i);
+            member.setAddress(new Address("seoul", "street " + i, "12345"));
+            ids.add(memberService.join(member));
+        }
+        return ids;
+    }
+
+    private static List<Long> seedItems(ItemService itemService) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < SEED_ITEMS; i++) {
+            Book book = new Book();
+            book.setName("LOAD BOOK " + i);
+            book.setPrice(10000);
+            book.setStockQuantity(10_000_000);
+            itemService.saveItem(book);
+            ids.add(book.getId());
+        }
+        return ids;
+    }
+}
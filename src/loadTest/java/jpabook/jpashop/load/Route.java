@@ -0,0 +1,71 @@
+package jpabook.jpashop.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.http.HttpRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 트래픽 믹스의 요청 종류 하나와 그 지연시간 히스토그램
+ */
+class Route {
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    final String name;
+    final int weight;
+    private final Function<ThreadLocalRandom, HttpRequest> requestFactory;
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+
+    Route(String name, int weight, Function<ThreadLocalRandom, HttpRequest> requestFactory) {
+        this.name = name;
+        this.weight = weight;
+        this.requestFactory = requestFactory;
+    }
+
+    HttpRequest newRequest() {
+        return requestFactory.apply(ThreadLocalRandom.current());
+    }
+
+    /**
+     * @param latencyNanos 예정된 시작시각부터 응답까지 (coordinated omission 보정)
+     */
+    void record(long latencyNanos, boolean success) {
+        latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_MICROS));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    void reset() {
+        latency.reset();
+        errors.reset();
+    }
+
+    long count() {
+        return latency.getTotalCount();
+    }
+
+    Map<String, Object> summary(double seconds) {
+        long count = latency.getTotalCount();
+        long errorCount = errors.sum();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", count);
+        summary.put("throughput", count / seconds);
+        summary.put("errors", errorCount);
+        summary.put("errorRate", count == 0 ? 0.0 : (double) errorCount / count);
+        summary.put("meanMicros", latency.getMean());
+        summary.put("p50Micros", latency.getValueAtPercentile(50));
+        summary.put("p90Micros", latency.getValueAtPercentile(90));
+        summary.put("p99Micros", latency.getValueAtPercentile(99));
+        summary.put("p999Micros", latency.getValueAtPercentile(99.9));
+        summary.put("maxMicros", latency.getMaxValue());
+        return summary;
+    }
+}
@@ -3,6 +3,7 @@ package jpabook.jpashop;
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Book;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -10,6 +11,7 @@ import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 
 @Component
+@Profile("!fast-start")
 @RequiredArgsConstructor
 public class InitDb {
 
@@ -38,6 +40,8 @@ public class InitDb {
 
             OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
             OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
+            book1.removeQuantity(1);
+            book2.removeQuantity(2);
 
             Delivery delivery = createDelivery(member);
 
@@ -58,6 +62,8 @@ public class InitDb {
 
             OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
             OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
+            book1.removeQuantity(3);
+            book2.removeQuantity(4);
 
             Delivery delivery = createDelivery(member);
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
@@ -84,6 +90,7 @@ public class InitDb {
         private Delivery createDelivery(Member member) {
             Delivery delivery = new Delivery();
             delivery.setAddress(member.getAddress());
+            delivery.setStatus(DeliveryStatus.READY);
             return delivery;
         }
     }
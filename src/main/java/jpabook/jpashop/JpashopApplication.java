@@ -1,11 +1,15 @@
 package jpabook.jpashop;
 
 import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import jpabook.jpashop.startup.ScheduledBeanExcludeFilter;
+import jpabook.jpashop.startup.StartupTimingReporter;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class JpashopApplication {
 
 	public static void main(String[] args) {
@@ -13,7 +17,9 @@ public class JpashopApplication {
 //		hello.setData("helloA");
 //		String data = hello.getData();
 //		System.out.println("data = " + data);
-		SpringApplication.run(JpashopApplication.class, args);
+		SpringApplication application = new SpringApplication(JpashopApplication.class);
+		application.addListeners(new StartupTimingReporter());
+		application.run(args);
 	}
 
 	@Bean
@@ -24,4 +30,12 @@ public class JpashopApplication {
 		return hibernate5Module;
 	}
 
+	/**
+	 * fast-start(지연 초기화)에서도 스케줄 작업 빈은 기동할 때 만든다.
+	 */
+	@Bean
+	static ScheduledBeanExcludeFilter scheduledBeanExcludeFilter(){
+		return new ScheduledBeanExcludeFilter();
+	}
+
 }
@@ -0,0 +1,149 @@
+package jpabook.jpashop.admission;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 입장 제어 필터
+ *
+ * 설정된 route 에 해당하는 요청은 초당 한도 > route 동시 실행 한도 > bulkhead 동시 실행 한도 순으로 검사한다.
+ * 한도를 넘으면 대기시키지 않고 바로 거절한다. (초당 한도 429, 동시 실행 한도 503)
+ * 조회용 API(reporting)와 주문(checkout)을 다른 bulkhead 로 나누면 조회 폭주가 주문에 쓸 스레드/커넥션을 다 차지하지 못한다.
+ * bulkhead 한도 합계는 커넥션 풀 크기 이하로 잡는다.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(AdmissionProperties.class)
+@ConditionalOnProperty(prefix = "jpashop.admission", name = "enabled", havingValue = "true")
+public class AdmissionFilter extends OncePerRequestFilter {
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<RouteGate> routes = new ArrayList<>();
+    private final Map<String, AdmissionGate> bulkheads = new LinkedHashMap<>();
+
+    public AdmissionFilter(AdmissionProperties properties) {
+        properties.getBulkheads().forEach((name, config) ->
+                bulkheads.put(name, new AdmissionGate(name, null, new ConcurrencyLimiter(config))));
+        properties.getRoutes().forEach((name, config) -> {
+            AdmissionGate bulkhead = null;
+            if (config.getBulkhead() != null) {
+                bulkhead = bulkheads.get(config.getBulkhead());
+                if (bulkhead == null) {
+                    throw new IllegalStateException("정의되지 않은 bulkhead 입니다. route=" + name + ", bulkhead=" + config.getBulkhead());
+                }
+            }
+            TokenBucket bucket = config.getRate() > 0 ? new TokenBucket(config.getRate(), config.getBurst()) : null;
+            ConcurrencyLimiter limiter = config.getMaxConcurrency() > 0 ? new ConcurrencyLimiter(config) : null;
+            routes.add(new RouteGate(config.getPatterns(), config.getMethod(), new AdmissionGate(name, bucket, limiter), bulkhead));
+        });
+        log.info("admission control routes={} bulkheads={}", properties.getRoutes().keySet(), bulkheads.keySet());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RouteGate route = match(request);
+        if (route == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!route.gate.tryRate()) {
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, route.gate.name);
+            return;
+        }
+        if (!route.gate.tryEnter()) {
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, route.gate.name);
+            return;
+        }
+        if (route.bulkhead != null && !route.bulkhead.tryEnter()) {
+            route.gate.cancel();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, route.bulkhead.name);
+            return;
+        }
+        route.gate.admit();
+        if (route.bulkhead != null) {
+            route.bulkhead.admit();
+        }
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long latency = System.nanoTime() - start;
+            if (route.bulkhead != null) {
+                route.bulkhead.exit(latency);
+            }
+            route.gate.exit(latency);
+        }
+    }
+
+    private RouteGate match(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (RouteGate route : routes) {
+            if (route.matches(pathMatcher, request.getMethod(), path)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String gate) throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType("application/json");
+        response.getWriter().write("{\"status\":" + status.value() + ",\"limit\":\"" + gate + "\"}");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> routeStats = new LinkedHashMap<>();
+        routes.forEach(r -> routeStats.put(r.gate.name, r.gate.stats()));
+        Map<String, Object> bulkheadStats = new LinkedHashMap<>();
+        bulkheads.forEach((name, gate) -> bulkheadStats.put(name, gate.stats()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("routes", routeStats);
+        stats.put("bulkheads", bulkheadStats);
+        return stats;
+    }
+
+    private static class RouteGate {
+        final List<String> patterns;
+        final String method;
+        final AdmissionGate gate;
+        final AdmissionGate bulkhead;
+
+        RouteGate(List<String> patterns, String method, AdmissionGate gate, AdmissionGate bulkhead) {
+            this.patterns = patterns;
+            this.method = method;
+            this.gate = gate;
+            this.bulkhead = bulkhead;
+        }
+
+        boolean matches(AntPathMatcher pathMatcher, String requestMethod, String path) {
+            if (method != null && !method.equalsIgnoreCase(requestMethod)) {
+                return false;
+            }
+            for (String pattern : patterns) {
+                if (pathMatcher.match(pattern, path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package jpabook.jpashop.admission;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * route 또는 bulkhead 하나의 입장 제어 상태
+ */
+class AdmissionGate {
+    final String name;
+    private final TokenBucket bucket;
+    private final ConcurrencyLimiter limiter;
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder concurrencyLimited = new LongAdder();
+
+    AdmissionGate(String name, TokenBucket bucket, ConcurrencyLimiter limiter) {
+        this.name = name;
+        this.bucket = bucket;
+        this.limiter = limiter;
+    }
+
+    boolean tryRate() {
+        if (bucket == null || bucket.tryAcquire()) {
+            return true;
+        }
+        rateLimited.increment();
+        return false;
+    }
+
+    boolean tryEnter() {
+        if (limiter == null || limiter.tryAcquire()) {
+            return true;
+        }
+        concurrencyLimited.increment();
+        return false;
+    }
+
+    /**
+     * route 와 bulkhead 허가를 모두 얻은 뒤에 센다.
+     */
+    void admit() {
+        admitted.increment();
+    }
+
+    /**
+     * 허가를 얻었지만 실행하지 않은 경우. 지연시간 표본으로 쓰지 않는다.
+     */
+    void cancel() {
+        if (limiter != null) {
+            limiter.cancel();
+        }
+    }
+
+    void exit(long latencyNanos) {
+        if (limiter != null) {
+            limiter.release(latencyNanos);
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("admitted", admitted.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("concurrencyLimited", concurrencyLimited.sum());
+        if (limiter != null) {
+            stats.put("limit", limiter.getLimit());
+            stats.put("inFlight", limiter.getInFlight());
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,47 @@
+package jpabook.jpashop.admission;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * jpashop.admission 설정
+ *
+ * bulkheads: 이름별 동시 실행 한도. 여러 route 가 하나의 bulkhead 를 나눠 쓴다.
+ * routes: 경로 패턴별 초당 요청 한도(token bucket), 동시 실행 한도, 소속 bulkhead
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "jpashop.admission")
+public class AdmissionProperties {
+    private boolean enabled;
+    private Map<String, Limit> bulkheads = new LinkedHashMap<>();
+    private Map<String, Route> routes = new LinkedHashMap<>();
+
+    @Getter @Setter
+    public static class Limit {
+        private int maxConcurrency = 16;
+        private int minConcurrency = 1;
+        //0 이면 고정 한도, 0보다 크면 지연시간 기준 AIMD 로 한도를 조절한다.
+        private long targetLatencyMs;
+    }
+
+    @Getter @Setter
+    public static class Route extends Limit {
+        //route 단독 동시 실행 한도는 지정한 경우만 (기본은 bulkhead 한도만 적용)
+        public Route() {
+            setMaxConcurrency(0);
+        }
+
+        private List<String> patterns = new ArrayList<>();
+        private String method;
+        private String bulkhead;
+        //초당 허용 요청 수, 0 이면 제한 없음
+        private double rate;
+        private int burst;
+    }
+}
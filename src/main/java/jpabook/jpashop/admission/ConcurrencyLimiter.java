@@ -0,0 +1,73 @@
+package jpabook.jpashop.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 동시 실행 한도
+ *
+ * targetLatencyMs 가 있으면 AIMD 로 한도를 조절한다.
+ *  응답이 목표보다 빠르면 한도 += 1/한도 (한도만큼 처리하면 1 증가)
+ *  목표보다 느리면 한도 *= 0.9 (최근 감소 후 한도만큼 처리하기 전에는 다시 줄이지 않는다)
+ * 커넥션 풀이 막히기 시작하면 지연시간이 먼저 늘어나므로 풀이 바닥나기 전에 한도가 줄어든다.
+ */
+class ConcurrencyLimiter {
+    private static final double BACKOFF = 0.9;
+
+    private final int min;
+    private final int max;
+    private final long targetLatencyNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private int sinceDecrease;
+
+    ConcurrencyLimiter(AdmissionProperties.Limit config) {
+        this.min = Math.max(1, config.getMinConcurrency());
+        this.max = Math.max(this.min, config.getMaxConcurrency());
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetLatencyMs());
+        this.limit = max;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release(long latencyNanos) {
+        inFlight.decrementAndGet();
+        if (targetLatencyNanos > 0) {
+            adjust(latencyNanos);
+        }
+    }
+
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void adjust(long latencyNanos) {
+        sinceDecrease++;
+        if (latencyNanos > targetLatencyNanos) {
+            if (sinceDecrease >= limit) {
+                limit = Math.max(min, limit * BACKOFF);
+                sinceDecrease = 0;
+            }
+        } else {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BestSeller {
+    private final int rank;
+    private final Long itemId;
+    private final String name;
+    private final long units;
+}
@@ -0,0 +1,22 @@
+package jpabook.jpashop.analytics;
+
+import lombok.Getter;
+
+/**
+ * 중복 제거 회원 수 추정값
+ * low ~ high = 약 95% 구간 (추정값 ± 2 * 표준오차)
+ */
+@Getter
+public class BuyerEstimate {
+    private final long estimate;
+    private final double standardError;
+    private final long low;
+    private final long high;
+
+    public BuyerEstimate(HyperLogLog sketch) {
+        this.estimate = sketch.estimate();
+        this.standardError = sketch.standardError();
+        this.low = Math.max(0, (long) Math.floor(estimate * (1 - 2 * standardError)));
+        this.high = (long) Math.ceil(estimate * (1 + 2 * standardError));
+    }
+}
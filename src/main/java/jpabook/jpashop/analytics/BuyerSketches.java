@@ -0,0 +1,209 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.BuyerSketch;
+import jpabook.jpashop.domain.SketchScope;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.repository.BuyerSketchRepository;
+import jpabook.jpashop.repository.CategoryRepository;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 구매 회원 수 추정 (상품 / 카테고리 / 일자별 HyperLogLog)
+ *
+ * 커밋된 주문마다 회원 id 해시를 그날의 회원 sketch, 상품 sketch, 상품이 속한 카테고리 sketch 에 넣는다.
+ * 기간, 하위 카테고리 조회는 일자별 sketch 를 합쳐서 센다. 취소는 빼지 않는다. (주문한 적 있는 회원 수)
+ * 최근 days 일 sketch 는 메모리에 두고 그 이전은 buyer_sketch 에서 읽어 합친다.
+ * 바뀐 sketch 는 persist-interval 마다 저장한다. 카테고리 연결도 그때 다시 읽는다.
+ */
+@Slf4j
+@Component
+public class BuyerSketches {
+    private static final long ALL_MEMBERS = 0L;
+
+    private final BuyerSketchRepository buyerSketchRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate tx;
+    private final int precision;
+    private final int days;
+
+    private final Map<Key, HyperLogLog> sketches = new ConcurrentHashMap<>();
+    private final Set<Key> dirty = ConcurrentHashMap.newKeySet();
+    private volatile Map<Long, List<Long>> itemCategories = Map.of();
+    private volatile Map<Long, List<Long>> childCategories = Map.of();
+
+    public BuyerSketches(BuyerSketchRepository buyerSketchRepository,
+                         CategoryRepository categoryRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${jpashop.buyer-sketch.precision:12}") int precision,
+                         @Value("${jpashop.buyer-sketch.days:35}") int days) {
+        this.buyerSketchRepository = buyerSketchRepository;
+        this.categoryRepository = categoryRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.precision = precision;
+        this.days = days;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        LocalDate today = LocalDate.now();
+        List<BuyerSketch> rows = tx.execute(s -> buyerSketchRepository.findBetween(memoryStart(today), today));
+        for(BuyerSketch row : rows){
+            HyperLogLog sketch = HyperLogLog.fromBytes(row.getRegisters());
+            if(sketch.getPrecision() == precision){
+                sketches.put(new Key(row.getScope(), row.getTargetId(), row.getSketchDate()), sketch);
+            }
+        }
+        refreshCategories();
+        log.info("buyer sketches loaded {}", sketches.size());
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event){
+        LocalDate day = event.getOrderDate().toLocalDate();
+        long hash = HyperLogLog.hash(event.getMemberId());
+        add(new Key(SketchScope.DAY, ALL_MEMBERS, day), hash);
+        Map<Long, List<Long>> categories = itemCategories;
+        for(OrderLine line : event.getLines()){
+            add(new Key(SketchScope.ITEM, line.getItemId(), day), hash);
+            for(Long categoryId : categories.getOrDefault(line.getItemId(), List.of())){
+                add(new Key(SketchScope.CATEGORY, categoryId, day), hash);
+            }
+        }
+    }
+
+    //==조회==//
+    public BuyerEstimate itemBuyers(Long itemId, LocalDate from, LocalDate to){
+        return new BuyerEstimate(union(SketchScope.ITEM, List.of(itemId), from, to));
+    }
+
+    /**
+     * @param subtree true = 하위 카테고리 구매 회원까지 합친다.
+     */
+    public BuyerEstimate categoryBuyers(Long categoryId, boolean subtree, LocalDate from, LocalDate to){
+        List<Long> categoryIds = subtree ? descendants(categoryId) : List.of(categoryId);
+        return new BuyerEstimate(union(SketchScope.CATEGORY, categoryIds, from, to));
+    }
+
+    public BuyerEstimate activeMembers(LocalDate from, LocalDate to){
+        return new BuyerEstimate(union(SketchScope.DAY, List.of(ALL_MEMBERS), from, to));
+    }
+
+    //==저장==//
+    @PreDestroy
+    public void stop(){
+        persist();
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.buyer-sketch.persist-interval:60000}")
+    public synchronized void persist(){
+        Map<Key, byte[]> changed = new HashMap<>();
+        for(Key key : dirty){
+            dirty.remove(key);
+            changed.put(key, sketches.get(key).toBytes());
+        }
+        if(!changed.isEmpty()){
+            try {
+                tx.executeWithoutResult(s -> changed.forEach((key, bytes) ->
+                        buyerSketchRepository.saveValue(key.getScope(), key.getTargetId(), key.getDay(), bytes)));
+            } catch (RuntimeException e) {
+                log.warn("buyer sketch persist failed sketches={}", changed.size(), e);
+                dirty.addAll(changed.keySet());
+            }
+        }
+        //메모리 보관 기간이 지난 저장된 sketch 는 내린다.
+        LocalDate memoryStart = memoryStart(LocalDate.now());
+        sketches.keySet().removeIf(key -> key.getDay().isBefore(memoryStart) && !dirty.contains(key));
+        refreshCategories();
+    }
+
+    private void add(Key key, long hash){
+        sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(hash);
+        dirty.add(key);
+    }
+
+    /**
+     * 기간, 대상의 sketch 합집합 (메모리 기간은 메모리, 그 이전은 DB)
+     */
+    private HyperLogLog union(SketchScope scope, List<Long> targetIds, LocalDate from, LocalDate to){
+        HyperLogLog union = new HyperLogLog(precision);
+        LocalDate memoryStart = memoryStart(LocalDate.now());
+        for(LocalDate day = from.isBefore(memoryStart) ? memoryStart : from; !day.isAfter(to); day = day.plusDays(1)){
+            for(Long targetId : targetIds){
+                HyperLogLog sketch = sketches.get(new Key(scope, targetId, day));
+                if(sketch != null){
+                    union.merge(sketch);
+                }
+            }
+        }
+        if(from.isBefore(memoryStart)){
+            LocalDate storedTo = to.isBefore(memoryStart) ? to : memoryStart.minusDays(1);
+            List<BuyerSketch> rows = tx.execute(s -> buyerSketchRepository.findBetween(scope, targetIds, from, storedTo));
+            for(BuyerSketch row : rows){
+                HyperLogLog sketch = HyperLogLog.fromBytes(row.getRegisters());
+                if(sketch.getPrecision() == precision){
+                    union.merge(sketch);
+                }
+            }
+        }
+        return union;
+    }
+
+    private List<Long> descendants(Long categoryId){
+        Map<Long, List<Long>> children = childCategories;
+        List<Long> result = new ArrayList<>();
+        Deque<Long> stack = new ArrayDeque<>(List.of(categoryId));
+        while(!stack.isEmpty()){
+            Long id = stack.pop();
+            if(!result.contains(id)){
+                result.add(id);
+                stack.addAll(children.getOrDefault(id, List.of()));
+            }
+        }
+        return result;
+    }
+
+    private LocalDate memoryStart(LocalDate today){
+        return today.minusDays(days - 1);
+    }
+
+    private void refreshCategories(){
+        Map<Long, List<Long>> items = new HashMap<>();
+        for(Object[] row : tx.execute(s -> categoryRepository.findItemCategories())){
+            items.computeIfAbsent(((Number) row[0]).longValue(), k -> new ArrayList<>()).add(((Number) row[1]).longValue());
+        }
+        Map<Long, List<Long>> children = new HashMap<>();
+        for(Object[] row : tx.execute(s -> categoryRepository.findParents())){
+            if(row[1] != null){
+                children.computeIfAbsent(((Number) row[1]).longValue(), k -> new ArrayList<>()).add(((Number) row[0]).longValue());
+            }
+        }
+        itemCategories = items;
+        childCategories = children;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    static class Key {
+        private final SketchScope scope;
+        private final Long targetId;
+        private final LocalDate day;
+    }
+}
@@ -0,0 +1,165 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.ItemSalesCount;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.repository.ItemSalesCountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * 판매량 순위 (누적 판매수량 상위 size 개)
+ *
+ * 커밋된 주문/취소 이벤트로 상품별 LongAdder 를 증감한다. (여러 스레드가 같은 상품을 올려도 칸이 나뉘어 경합이 적다)
+ * publish-interval 마다 상위 size 개를 골라 수정할 수 없는 List 로 바꿔 끼운다. 화면은 잠금 없이 그 List 를 읽는다.
+ * checkpoint-interval 마다 바뀐 상품의 누적값을 item_sales_count 에 저장하고, 기동시 읽는다.
+ * (저장된 값이 없으면 주문 테이블에서 한 번 집계한다)
+ */
+@Slf4j
+@Component
+public class Leaderboard {
+    private final ItemSalesCountRepository itemSalesCountRepository;
+    private final TransactionTemplate tx;
+    private final int size;
+
+    private final Map<Long, LongAdder> counters = new ConcurrentHashMap<>();
+    //체크포인트 스레드만 쓴다.
+    private final Map<Long, Long> checkpointed = new HashMap<>();
+    private volatile List<BestSeller> top = List.of();
+
+    public Leaderboard(ItemSalesCountRepository itemSalesCountRepository,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${jpashop.leaderboard.size:10}") int size) {
+        this.itemSalesCountRepository = itemSalesCountRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.size = size;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load(){
+        List<ItemSalesCount> rows = tx.execute(s -> itemSalesCountRepository.findAll());
+        if(!rows.isEmpty()){
+            for(ItemSalesCount row : rows){
+                counter(row.getItemId()).add(row.getUnits());
+                checkpointed.put(row.getItemId(), row.getUnits());
+            }
+        }else{
+            List<Object[]> counts = tx.execute(s -> itemSalesCountRepository.countFromOrders());
+            for(Object[] row : counts){
+                counter(((Number) row[0]).longValue()).add(((Number) row[1]).longValue());
+            }
+        }
+        log.info("leaderboard loaded items={}", counters.size());
+        publish();
+    }
+
+    /**
+     * 잠금 없이 읽는 최근 순위
+     */
+    public List<BestSeller> top(){
+        return top;
+    }
+
+    //==집계 반영==//
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event){
+        for(OrderLine line : event.getLines()){
+            counter(line.getItemId()).add(line.getCount());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event){
+        for(OrderLine line : event.getLines()){
+            counter(line.getItemId()).add(-line.getCount());
+        }
+    }
+
+    //==순위 게시, 체크포인트==//
+    @Scheduled(fixedDelayString = "${jpashop.leaderboard.publish-interval:1000}")
+    public void publish(){
+        PriorityQueue<long[]> heap = new PriorityQueue<>(Comparator.comparingLong((long[] e) -> e[1]));
+        counters.forEach((itemId, counter) -> {
+            long units = counter.sum();
+            if(units <= 0){
+                return;
+            }
+            heap.add(new long[]{itemId, units});
+            if(heap.size() > size){
+                heap.poll();
+            }
+        });
+        List<long[]> ranked = new ArrayList<>(heap);
+        ranked.sort(Comparator.comparingLong((long[] e) -> e[1]).reversed());
+        if(sameRanking(ranked)){
+            return;
+        }
+
+        Map<Long, String> names = ranked.isEmpty() ? Map.of() :
+                tx.execute(s -> itemSalesCountRepository.findNames(ranked.stream().map(e -> e[0]).collect(toList()))).stream()
+                        .collect(toMap(r -> (Long) r[0], r -> (String) r[1]));
+        List<BestSeller> published = new ArrayList<>();
+        for(long[] e : ranked){
+            published.add(new BestSeller(published.size() + 1, e[0], names.get(e[0]), e[1]));
+        }
+        top = List.copyOf(published);
+    }
+
+    @PreDestroy
+    public void stop(){
+        checkpoint();
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.leaderboard.checkpoint-interval:10000}")
+    public synchronized void checkpoint(){
+        Map<Long, Long> changed = new HashMap<>();
+        counters.forEach((itemId, counter) -> {
+            long units = counter.sum();
+            if(!Objects.equals(checkpointed.get(itemId), units)){
+                changed.put(itemId, units);
+            }
+        });
+        if(changed.isEmpty()){
+            return;
+        }
+        try {
+            tx.executeWithoutResult(s -> changed.forEach(itemSalesCountRepository::saveValue));
+            checkpointed.putAll(changed);
+        } catch (RuntimeException e) {
+            log.warn("leaderboard checkpoint failed items={}", changed.size(), e);
+        }
+    }
+
+    private LongAdder counter(Long itemId){
+        return counters.computeIfAbsent(itemId, id -> new LongAdder());
+    }
+
+    private boolean sameRanking(List<long[]> ranked){
+        List<BestSeller> current = top;
+        if(current.size() != ranked.size()){
+            return false;
+        }
+        for(int i = 0; i < ranked.size(); i++){
+            if(current.get(i).getItemId() != ranked.get(i)[0] || current.get(i).getUnits() != ranked.get(i)[1]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,307 @@
+package jpabook.jpashop.analytics;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * 상품 x 일자 매출 집계 (메모리)
+ *
+ * 상품마다 days 칸을 연속으로 둔 1차원 배열이다. 칸 = 상품 순번 * days + (epochDay % days)
+ * 가장 최근 일자가 바뀌면 밀려나는 일자의 칸을 비우고 새 일자로 쓴다. (days 일 보다 오래된 일자는 add 가 false 를 돌려준다)
+ * 바뀐 칸은 dirty 로 표시하고 drainDirty 로 꺼내서 저장한다. 칸이 비워질 때 저장 전인 값은 따로 모아둔다.
+ */
+class RollupTable {
+    private static final long NO_DAY = Long.MIN_VALUE;
+
+    private final int days;
+    private final StampedLock lock = new StampedLock();
+    private final Map<Long, Integer> itemIndex = new HashMap<>();
+    private final long[] slotDays;
+    private long[] itemIds = new long[64];
+    private int itemCount;
+    private long[] revenue;
+    private int[] units;
+    private BitSet dirty = new BitSet();
+    private final List<Cell> evicted = new ArrayList<>();
+    private long latestDay = NO_DAY;
+
+    RollupTable(int days) {
+        this.days = days;
+        this.slotDays = new long[days];
+        Arrays.fill(slotDays, NO_DAY);
+        this.revenue = new long[itemIds.length * days];
+        this.units = new int[itemIds.length * days];
+    }
+
+    /**
+     * 증감 (주문 +, 취소 -)
+     * @return false = 보관 기간 밖 일자라 반영하지 않음
+     */
+    boolean add(long itemId, long epochDay, long revenueDelta, int unitsDelta) {
+        long stamp = lock.writeLock();
+        try {
+            int cell = cell(itemId, epochDay);
+            if (cell < 0) {
+                return false;
+            }
+            revenue[cell] += revenueDelta;
+            units[cell] += unitsDelta;
+            dirty.set(cell);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 저장된 값 적재 (dirty 아님)
+     */
+    void set(long itemId, long epochDay, long revenueValue, int unitsValue) {
+        long stamp = lock.writeLock();
+        try {
+            int cell = cell(itemId, epochDay);
+            if (cell < 0) {
+                return;
+            }
+            revenue[cell] = revenueValue;
+            units[cell] = unitsValue;
+            dirty.clear(cell);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 기간의 모든 상품 값을 비운다. (재집계 전)
+     */
+    void clear(long fromDay, long toDay) {
+        long stamp = lock.writeLock();
+        try {
+            for (long day = Math.max(fromDay, oldestDay()); day <= toDay && day <= latestDay; day++) {
+                int slot = slot(day);
+                if (slotDays[slot] != day) {
+                    continue;
+                }
+                for (int item = 0; item < itemCount; item++) {
+                    int cell = item * days + slot;
+                    revenue[cell] = 0;
+                    units[cell] = 0;
+                    dirty.clear(cell);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 저장할 칸을 꺼내고 dirty 표시를 지운다.
+     */
+    List<Cell> drainDirty() {
+        long stamp = lock.writeLock();
+        try {
+            List<Cell> cells = new ArrayList<>(evicted);
+            evicted.clear();
+            for (int cell = dirty.nextSetBit(0); cell >= 0; cell = dirty.nextSetBit(cell + 1)) {
+                cells.add(toCell(cell));
+            }
+            dirty.clear();
+            return cells;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 저장 실패한 칸을 다시 dirty 로 (그 사이 바뀐 값이 있으면 그 값이 저장된다)
+     */
+    void markDirty(List<Cell> cells) {
+        long stamp = lock.writeLock();
+        try {
+            for (Cell c : cells) {
+                Integer item = itemIndex.get(c.itemId);
+                if (item != null && c.epochDay > latestDay - days && slotDays[slot(c.epochDay)] == c.epochDay) {
+                    dirty.set(item * days + slot(c.epochDay));
+                } else {
+                    evicted.add(c);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    List<SalesTotal> top(long fromDay, long toDay, int limit, boolean byUnits) {
+        long stamp = lock.readLock();
+        try {
+            PriorityQueue<SalesTotal> heap = new PriorityQueue<>(
+                    (a, b) -> Long.compare(byUnits ? a.getUnits() : a.getRevenue(), byUnits ? b.getUnits() : b.getRevenue()));
+            for (int item = 0; item < itemCount; item++) {
+                SalesTotal total = sum(item, fromDay, toDay);
+                if (total.getUnits() == 0 && total.getRevenue() == 0) {
+                    continue;
+                }
+                heap.add(total);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            List<SalesTotal> result = new ArrayList<>(heap);
+            result.sort(heap.comparator().reversed());
+            return result;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 여러 상품의 기간 합계 (카테고리)
+     */
+    SalesTotal total(Long id, long[] itemIdsToSum, long fromDay, long toDay) {
+        long stamp = lock.readLock();
+        try {
+            long revenueSum = 0;
+            long unitsSum = 0;
+            for (long itemId : itemIdsToSum) {
+                Integer item = itemIndex.get(itemId);
+                if (item != null) {
+                    SalesTotal total = sum(item, fromDay, toDay);
+                    revenueSum += total.getRevenue();
+                    unitsSum += total.getUnits();
+                }
+            }
+            return new SalesTotal(id, revenueSum, unitsSum);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 상품의 일자별 값 (보관 기간 안, 매출 없는 날 포함)
+     */
+    List<SalesDay> series(long itemId, long fromDay, long toDay) {
+        long stamp = lock.readLock();
+        try {
+            List<SalesDay> series = new ArrayList<>();
+            Integer item = itemIndex.get(itemId);
+            for (long day = Math.max(fromDay, oldestDay()); day <= toDay && day <= latestDay; day++) {
+                int slot = slot(day);
+                if (item == null || slotDays[slot] != day) {
+                    series.add(new SalesDay(LocalDate.ofEpochDay(day), 0, 0));
+                } else {
+                    int cell = item * days + slot;
+                    series.add(new SalesDay(LocalDate.ofEpochDay(day), revenue[cell], units[cell]));
+                }
+            }
+            return series;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    int itemCount() {
+        long stamp = lock.readLock();
+        try {
+            return itemCount;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    //==write lock 안에서만 호출==//
+    private int cell(long itemId, long epochDay) {
+        if (latestDay == NO_DAY || epochDay > latestDay) {
+            advance(epochDay);
+        }
+        if (epochDay <= latestDay - days) {
+            return -1;
+        }
+        //advance 이후에는 창 안의 칸이 모두 자기 일자를 가리킨다.
+        return index(itemId) * days + slot(epochDay);
+    }
+
+    private void advance(long epochDay) {
+        long from = latestDay == NO_DAY ? epochDay - days + 1 : Math.max(latestDay + 1, epochDay - days + 1);
+        for (long day = from; day <= epochDay; day++) {
+            int slot = slot(day);
+            if (slotDays[slot] != NO_DAY) {
+                for (int item = 0; item < itemCount; item++) {
+                    int cell = item * days + slot;
+                    if (dirty.get(cell)) {
+                        evicted.add(toCell(cell));
+                        dirty.clear(cell);
+                    }
+                    revenue[cell] = 0;
+                    units[cell] = 0;
+                }
+            }
+            slotDays[slot] = day;
+        }
+        latestDay = epochDay;
+    }
+
+    private int index(long itemId) {
+        Integer item = itemIndex.get(itemId);
+        if (item != null) {
+            return item;
+        }
+        if (itemCount == itemIds.length) {
+            int capacity = itemIds.length * 2;
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            revenue = Arrays.copyOf(revenue, capacity * days);
+            units = Arrays.copyOf(units, capacity * days);
+        }
+        itemIds[itemCount] = itemId;
+        itemIndex.put(itemId, itemCount);
+        return itemCount++;
+    }
+
+    private SalesTotal sum(int item, long fromDay, long toDay) {
+        long revenueSum = 0;
+        long unitsSum = 0;
+        for (long day = Math.max(fromDay, oldestDay()); day <= toDay && day <= latestDay; day++) {
+            int slot = slot(day);
+            if (slotDays[slot] == day) {
+                int cell = item * days + slot;
+                revenueSum += revenue[cell];
+                unitsSum += units[cell];
+            }
+        }
+        return new SalesTotal(itemIds[item], revenueSum, unitsSum);
+    }
+
+    private Cell toCell(int cell) {
+        int item = cell / days;
+        int slot = cell % days;
+        return new Cell(itemIds[item], slotDays[slot], revenue[cell], units[cell]);
+    }
+
+    private long oldestDay() {
+        return latestDay == NO_DAY ? Long.MAX_VALUE : latestDay - days + 1;
+    }
+
+    private int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) days);
+    }
+
+    static class Cell {
+        final long itemId;
+        final long epochDay;
+        final long revenue;
+        final int units;
+
+        Cell(long itemId, long epochDay, long revenue, int units) {
+            this.itemId = itemId;
+            this.epochDay = epochDay;
+            this.revenue = revenue;
+            this.units = units;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package jpabook.jpashop.analytics;
+
+import jpabook.jpashop.domain.SalesRollup;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.repository.CategoryRepository;
+import jpabook.jpashop.repository.SalesRollupRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 매출 집계 (상품 / 카테고리 / 일자)
+ *
+ * 커밋된 주문, 취소 이벤트로 메모리의 상품 x 일자 집계(RollupTable)를 증감하고 조회는 메모리에서만 한다.
+ * 바뀐 칸은 persist-interval 마다 sales_rollup 에 저장하고, 기동시 보관 기간(days)만큼 다시 읽는다.
+ * 마지막 저장 이후 변경은 재기동하면 사라지므로 필요하면 그 날짜를 재집계(backfill)한다.
+ * 보관 기간이 지난 일자의 주문 취소는 메모리에 없으므로 저장할 때 sales_rollup 에 바로 더한다.
+ * 카테고리 합계는 카테고리에 속한 상품 합계로 구한다. (상품-카테고리 연결은 저장할 때마다 다시 읽는다)
+ */
+@Slf4j
+@Component
+public class SalesAnalytics {
+    private final SalesRollupRepository salesRollupRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate tx;
+    @Getter
+    private final int days;
+    private final RollupTable table;
+
+    //보관 기간 밖 일자의 증감 (persist 때 sales_rollup 에 더한다)
+    private final Queue<RollupTable.Cell> outOfWindow = new ConcurrentLinkedQueue<>();
+    private volatile Map<Long, long[]> categoryItems = Map.of();
+
+    public SalesAnalytics(SalesRollupRepository salesRollupRepository,
+                          CategoryRepository categoryRepository,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${jpashop.analytics.days:92}") int days) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.categoryRepository = categoryRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.days = days;
+        this.table = new RollupTable(days);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        LocalDate today = LocalDate.now();
+        List<SalesRollup> rows = tx.execute(s -> salesRollupRepository.findBetween(today.minusDays(days - 1), today));
+        for(SalesRollup row : rows){
+            table.set(row.getId().getItemId(), row.getId().getSalesDate().toEpochDay(), row.getRevenue(), row.getUnits());
+        }
+        refreshCategories();
+        log.info("sales rollups loaded rows={} items={}", rows.size(), table.itemCount());
+    }
+
+    //==집계 반영==//
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event){
+        apply(event.getOrderDate(), event.getLines(), 1);
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event){
+        apply(event.getOrderDate(), event.getLines(), -1);
+    }
+
+    private void apply(LocalDateTime orderDate, List<OrderLine> lines, int sign){
+        long day = orderDate.toLocalDate().toEpochDay();
+        for(OrderLine line : lines){
+            long revenue = sign * (long) line.getOrderPrice() * line.getCount();
+            int units = sign * line.getCount();
+            if(!table.add(line.getItemId(), day, revenue, units)){
+                outOfWindow.add(new RollupTable.Cell(line.getItemId(), day, revenue, units));
+            }
+        }
+    }
+
+    //==조회==//
+    /**
+     * 기간 [from, to] 상위 상품
+     * @param byUnits true = 수량순, false = 매출순
+     */
+    public List<SalesTotal> topItems(LocalDate from, LocalDate to, int limit, boolean byUnits){
+        return table.top(from.toEpochDay(), to.toEpochDay(), limit, byUnits);
+    }
+
+    public List<SalesDay> itemSeries(Long itemId, LocalDate from, LocalDate to){
+        return table.series(itemId, from.toEpochDay(), to.toEpochDay());
+    }
+
+    /**
+     * 카테고리별 합계 (매출순)
+     */
+    public List<SalesTotal> categories(LocalDate from, LocalDate to){
+        return categoryItems.entrySet().stream()
+                .map(e -> table.total(e.getKey(), e.getValue(), from.toEpochDay(), to.toEpochDay()))
+                .sorted(Comparator.comparingLong(SalesTotal::getRevenue).reversed())
+                .collect(toList());
+    }
+
+    //==저장, 재집계==//
+    @PreDestroy
+    public void stop(){
+        persist();
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.analytics.persist-interval:60000}")
+    public synchronized void persist(){
+        List<RollupTable.Cell> cells = table.drainDirty();
+        List<RollupTable.Cell> deltas = new ArrayList<>();
+        RollupTable.Cell delta;
+        while((delta = outOfWindow.poll()) != null){
+            deltas.add(delta);
+        }
+        if(!cells.isEmpty() || !deltas.isEmpty()){
+            try {
+                tx.executeWithoutResult(s -> {
+                    for(RollupTable.Cell cell : cells){
+                        salesRollupRepository.saveValue(cell.itemId, LocalDate.ofEpochDay(cell.epochDay), cell.revenue, cell.units);
+                    }
+                    //밀려난 칸의 값을 먼저 저장해야 그 뒤의 증감을 덮어쓰지 않는다.
+                    for(RollupTable.Cell d : deltas){
+                        if(salesRollupRepository.addDelta(d.itemId, LocalDate.ofEpochDay(d.epochDay), d.revenue, d.units) == 0){
+                            log.warn("sales rollup delta skipped itemId={} date={} units={}",
+                                    d.itemId, LocalDate.ofEpochDay(d.epochDay), d.units);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                log.warn("sales rollup persist failed cells={} deltas={}", cells.size(), deltas.size(), e);
+                table.markDirty(cells);
+                outOfWindow.addAll(deltas);
+            }
+        }
+        refreshCategories();
+    }
+
+    /**
+     * 주문 테이블로 기간 [from, to] 집계를 다시 만든다.
+     * 집계 쿼리가 도는 동안 커밋된 그 기간의 주문, 취소는 빠질 수 있으므로 주문이 끝난 날짜에 실행한다.
+     * @return 만들어진 집계 row 수
+     */
+    public synchronized int backfill(LocalDate from, LocalDate to){
+        if(from.isAfter(to)){
+            throw new IllegalArgumentException("from 이 to 보다 늦습니다.");
+        }
+        //저장 전 변경을 먼저 내보내야 재집계 결과를 덮어쓰지 않는다.
+        persist();
+        List<SalesRollup> rows = tx.execute(s -> {
+            salesRollupRepository.rebuild(from, to);
+            return salesRollupRepository.findBetween(from, to);
+        });
+        table.clear(from.toEpochDay(), to.toEpochDay());
+        for(SalesRollup row : rows){
+            table.set(row.getId().getItemId(), row.getId().getSalesDate().toEpochDay(), row.getRevenue(), row.getUnits());
+        }
+        log.info("sales rollups rebuilt {} ~ {} rows={}", from, to, rows.size());
+        return rows.size();
+    }
+
+    public Map<String, Object> stats(){
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("days", days);
+        stats.put("items", table.itemCount());
+        stats.put("categories", categoryItems.size());
+        return stats;
+    }
+
+    private void refreshCategories(){
+        List<Object[]> rows = tx.execute(s -> categoryRepository.findItemCategories());
+        Map<Long, List<Long>> grouped = new HashMap<>();
+        for(Object[] row : rows){
+            grouped.computeIfAbsent(((Number) row[1]).longValue(), k -> new ArrayList<>()).add(((Number) row[0]).longValue());
+        }
+        Map<Long, long[]> refreshed = new HashMap<>();
+        grouped.forEach((categoryId, itemIds) -> refreshed.put(categoryId, itemIds.stream().mapToLong(Long::longValue).toArray()));
+        categoryItems = refreshed;
+    }
+}
@@ -0,0 +1,14 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDate;
+
+@Getter
+@AllArgsConstructor
+public class SalesDay {
+    private final LocalDate date;
+    private final long revenue;
+    private final long units;
+}
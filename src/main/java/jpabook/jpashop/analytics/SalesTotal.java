@@ -0,0 +1,15 @@
+package jpabook.jpashop.analytics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 기간 합계 (id = 상품 id 또는 카테고리 id)
+ */
+@Getter
+@AllArgsConstructor
+public class SalesTotal {
+    private final Long id;
+    private final long revenue;
+    private final long units;
+}
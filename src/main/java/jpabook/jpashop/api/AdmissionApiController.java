@@ -0,0 +1,24 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.admission.AdmissionFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 입장 제어 현황 (route, bulkhead 별 통과/거절 건수, 현재 동시 실행 한도)
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.admission", name = "enabled", havingValue = "true")
+public class AdmissionApiController {
+    private final AdmissionFilter admissionFilter;
+
+    @GetMapping("/api/admission/stats")
+    public Map<String, Object> stats(){
+        return admissionFilter.stats();
+    }
+}
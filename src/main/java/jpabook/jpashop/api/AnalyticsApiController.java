@@ -0,0 +1,123 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.analytics.BuyerEstimate;
+import jpabook.jpashop.analytics.BuyerSketches;
+import jpabook.jpashop.analytics.SalesAnalytics;
+import jpabook.jpashop.analytics.SalesDay;
+import jpabook.jpashop.analytics.SalesTotal;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 매출 집계, 구매 회원 수 조회 (메모리, 보관 기간 jpashop.analytics.days 안)
+ * 기간은 from ~ to (일자 포함)이고 생략하면 오늘까지 최근 days 일이다.
+ */
+@RestController
+@RequiredArgsConstructor
+public class AnalyticsApiController {
+    private static final int MAX_LIMIT = 1000;
+
+    private final SalesAnalytics salesAnalytics;
+    private final BuyerSketches buyerSketches;
+
+    /**
+     * ex) 최근 7일 매출 상위 10개 상품: /api/v1/analytics/top-items?days=7
+     */
+    @GetMapping("/api/v1/analytics/top-items")
+    public Result<List<SalesTotal>> topItems(
+            @RequestParam(value = "days", defaultValue = "7") int days,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "by", defaultValue = "revenue") String by){
+        LocalDate to = LocalDate.now();
+        LocalDate from = to.minusDays(Math.max(days, 1) - 1);
+        return new Result<>(from, to, salesAnalytics.topItems(from, to, Math.min(Math.max(limit, 1), MAX_LIMIT), "units".equals(by)));
+    }
+
+    @GetMapping("/api/v1/analytics/items/{itemId}")
+    public Result<List<SalesDay>> itemSeries(
+            @PathVariable("itemId") Long itemId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(6) : from;
+        return new Result<>(start, end, salesAnalytics.itemSeries(itemId, start, end));
+    }
+
+    @GetMapping("/api/v1/analytics/categories")
+    public Result<List<SalesTotal>> categories(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(6) : from;
+        return new Result<>(start, end, salesAnalytics.categories(start, end));
+    }
+
+    /**
+     * 구매 회원 수 추정 (HyperLogLog, low ~ high = 약 95% 구간)
+     */
+    @GetMapping("/api/v1/analytics/buyers/items/{itemId}")
+    public Result<BuyerEstimate> itemBuyers(
+            @PathVariable("itemId") Long itemId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(6) : from;
+        return new Result<>(start, end, buyerSketches.itemBuyers(itemId, start, end));
+    }
+
+    @GetMapping("/api/v1/analytics/buyers/categories/{categoryId}")
+    public Result<BuyerEstimate> categoryBuyers(
+            @PathVariable("categoryId") Long categoryId,
+            @RequestParam(value = "subtree", defaultValue = "true") boolean subtree,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end.minusDays(6) : from;
+        return new Result<>(start, end, buyerSketches.categoryBuyers(categoryId, subtree, start, end));
+    }
+
+    /**
+     * 기간 중 주문한 회원 수 (from 생략시 오늘 하루)
+     */
+    @GetMapping("/api/v1/analytics/buyers/members")
+    public Result<BuyerEstimate> activeMembers(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now() : to;
+        LocalDate start = from == null ? end : from;
+        return new Result<>(start, end, buyerSketches.activeMembers(start, end));
+    }
+
+    /**
+     * 주문 테이블로 기간 집계를 다시 만든다. (기본: 어제까지 보관 기간 전체)
+     */
+    @PostMapping("/api/v1/analytics/backfill")
+    public Map<String, Object> backfill(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+        LocalDate end = to == null ? LocalDate.now().minusDays(1) : to;
+        LocalDate start = from == null ? end.minusDays(salesAnalytics.getDays() - 2) : from;
+        int rows = salesAnalytics.backfill(start, end);
+        return Map.of("from", start, "to", end, "rows", rows);
+    }
+
+    @GetMapping("/api/v1/analytics/stats")
+    public Map<String, Object> stats(){
+        return salesAnalytics.stats();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class Result<T>{
+        private LocalDate from;
+        private LocalDate to;
+        private T data;
+    }
+}
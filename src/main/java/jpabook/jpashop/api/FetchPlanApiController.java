@@ -0,0 +1,33 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.repository.fetch.FetchPlanAdvisor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * endpoint 별 지연 로딩 현황과 추천 fetch 계획
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.fetch-plan", name = "advisor", havingValue = "true")
+public class FetchPlanApiController {
+    private final FetchPlanAdvisor fetchPlanAdvisor;
+
+    @GetMapping("/api/fetch-plans")
+    public Map<String, Object> report(){
+        return fetchPlanAdvisor.report();
+    }
+
+    /**
+     * 수집한 통계와 고정된 계획을 지운다.
+     */
+    @DeleteMapping("/api/fetch-plans")
+    public void reset(){
+        fetchPlanAdvisor.reset();
+    }
+}
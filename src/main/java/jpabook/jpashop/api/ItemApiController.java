@@ -0,0 +1,66 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.StockAvailability;
+import jpabook.jpashop.service.StockService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 분할 재고 관리 (주문이 몰리는 상품에만 사용), 품절 빠른 거절 현황
+ */
+@RestController
+@RequiredArgsConstructor
+public class ItemApiController {
+    private final StockService stockService;
+    private final StockAvailability stockAvailability;
+
+    /**
+     * 품절 빠른 거절 현황 (메모리에 상한을 둔 상품 수, 거절 건수)
+     */
+    @GetMapping("/api/v1/items/availability")
+    public Map<String, Object> availability(){
+        return stockAvailability.stats();
+    }
+
+    @GetMapping("/api/v1/items/{itemId}/stock-shards")
+    public StockShardsResponse shards(@PathVariable("itemId") Long itemId){
+        return toResponse(itemId);
+    }
+
+    /**
+     * 현재 재고를 shards 개 row 로 나눈다.
+     */
+    @PostMapping("/api/v1/items/{itemId}/stock-shards")
+    public StockShardsResponse enable(@PathVariable("itemId") Long itemId,
+                                      @RequestParam(value = "shards", defaultValue = "16") int shards){
+        stockService.enableSharding(itemId, shards);
+        return toResponse(itemId);
+    }
+
+    /**
+     * 분할 재고를 합쳐서 상품 재고로 되돌린다.
+     */
+    @DeleteMapping("/api/v1/items/{itemId}/stock-shards")
+    public StockShardsResponse disable(@PathVariable("itemId") Long itemId){
+        stockService.disableSharding(itemId);
+        return toResponse(itemId);
+    }
+
+    private StockShardsResponse toResponse(Long itemId){
+        List<Integer> quantities = stockService.findShardQuantities(itemId);
+        return new StockShardsResponse(itemId, quantities.stream().mapToInt(Integer::intValue).sum(), quantities);
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class StockShardsResponse{
+        private Long itemId;
+        private int shardedTotal;
+        private List<Integer> shards;
+    }
+}
@@ -0,0 +1,39 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.journal.JournalProjection;
+import jpabook.jpashop.journal.JournalStats;
+import jpabook.jpashop.journal.OrderJournal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * 저널에서 다시 만든 읽기 모델 조회 (SQL 실행 없음)
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.journal", name = "dir")
+public class JournalApiController {
+    private final OrderJournal orderJournal;
+
+    @GetMapping("/api/journal/stats")
+    public JournalStats stats() throws IOException {
+        return orderJournal.stats();
+    }
+
+    @GetMapping("/api/journal/items/{itemId}")
+    public ResponseEntity<JournalProjection.ItemView> item(@PathVariable("itemId") Long itemId){
+        return ResponseEntity.of(Optional.ofNullable(orderJournal.getProjection().findItem(itemId)));
+    }
+
+    @GetMapping("/api/journal/members/{memberId}")
+    public ResponseEntity<JournalProjection.MemberView> member(@PathVariable("memberId") Long memberId){
+        return ResponseEntity.of(Optional.ofNullable(orderJournal.getProjection().findMember(memberId)));
+    }
+}
@@ -1,15 +1,25 @@
 package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.MemberOrderStats;
+import jpabook.jpashop.repository.order.query.MemberOrderHistoryDto;
+import jpabook.jpashop.repository.member.query.MemberQueryDto;
+import jpabook.jpashop.repository.member.query.MemberQueryRepository;
+import jpabook.jpashop.service.MemberCounter;
 import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,7 +27,13 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MemberApiController {
 
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_HISTORY_LIMIT = 100;
+
     private final MemberService memberService;
+    private final MemberQueryRepository memberQueryRepository;
+    private final MemberCounter memberCounter;
+    private final OrderService orderService;
 
     @PostMapping("/api/v1/members")
     public CreateMemberResponse saveMemberV1(@RequestBody @Valid Member member){
@@ -54,6 +70,51 @@ public class MemberApiController {
         return new Result(collect.size(), collect);
     }
 
+    /**
+     * DTO 직접조회 + keyset 페이징
+     *
+     * 엔티티를 만들지 않고 id, name만 조회
+     * lastId 이후 limit 건만 조회하므로 회원수가 많아도 메모리 사용량이 일정하다.
+     * 전체 회원수는 count 쿼리 대신 MemberCounter 캐시값 사용
+     *
+     * @param lastId 이전 페이지의 nextLastId
+     * @param limit 1 ~ 1000건
+     * @return
+     */
+    @GetMapping("/api/v3/members")
+    public MemberPage membersV3(@RequestParam(value = "lastId", defaultValue = "0") Long lastId,
+                                @RequestParam(value = "limit", defaultValue = "100") int limit){
+        List<MemberQueryDto> members = memberQueryRepository.findMemberDtos(lastId, Math.min(Math.max(limit, 1), MAX_LIMIT));
+        Long nextLastId = members.isEmpty() ? null : members.get(members.size() - 1).getId();
+        return new MemberPage(memberCounter.get(), nextLastId, members);
+    }
+
+    /**
+     * 회원 주문 통계 (주문수, 총 주문금액은 취소 제외)
+     */
+    @GetMapping("/api/v1/members/{id}/order-stats")
+    public MemberOrderStatsDto orderStats(@PathVariable("id") Long id){
+        return new MemberOrderStatsDto(memberService.findOrderStats(id));
+    }
+
+    /**
+     * 회원 주문내역 keyset 페이징 (최근 주문부터, 보관 주문 포함)
+     * 다음 페이지는 응답의 nextLastOrderDate, nextLastId 를 그대로 넘긴다. limit 은 1 ~ 100
+     */
+    @GetMapping("/api/v1/members/{id}/orders")
+    public MemberOrderPage orders(@PathVariable("id") Long id,
+                                  @RequestParam(value = "lastOrderDate", required = false)
+                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime lastOrderDate,
+                                  @RequestParam(value = "lastId", required = false) Long lastId,
+                                  @RequestParam(value = "limit", defaultValue = "20") int limit){
+        if(limit < 1 || limit > MAX_HISTORY_LIMIT){
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit 은 1 ~ " + MAX_HISTORY_LIMIT + " 이어야 합니다.");
+        }
+        List<MemberOrderHistoryDto> orders = orderService.findMemberOrderHistory(id, lastOrderDate, lastId, limit);
+        MemberOrderHistoryDto last = orders.isEmpty() ? null : orders.get(orders.size() - 1);
+        return new MemberOrderPage(last == null ? null : last.getOrderDate(), last == null ? null : last.getOrderId(), orders);
+    }
+
     @Data
     @AllArgsConstructor
     static class CreateMemberResponse {
@@ -85,6 +146,37 @@ public class MemberApiController {
         private T data;
     }
 
+    @Data
+    @AllArgsConstructor
+    static class MemberPage{
+        private long totalCount;
+        private Long nextLastId;
+        private List<MemberQueryDto> data;
+    }
+
+    @Data
+    static class MemberOrderStatsDto{
+        private Long memberId;
+        private long orderCount;
+        private long totalSpend;
+        private LocalDateTime lastOrderDate;
+
+        public MemberOrderStatsDto(MemberOrderStats stats) {
+            this.memberId = stats.getMemberId();
+            this.orderCount = stats.getOrderCount();
+            this.totalSpend = stats.getTotalSpend();
+            this.lastOrderDate = stats.getLastOrderDate();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class MemberOrderPage{
+        private LocalDateTime nextLastOrderDate;
+        private Long nextLastId;
+        private List<MemberOrderHistoryDto> data;
+    }
+
     @Data
     @AllArgsConstructor
     static class MemberDto{
@@ -2,16 +2,24 @@ package jpabook.jpashop.api;
 
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.fetch.FetchPlan;
+import jpabook.jpashop.repository.fetch.FetchPlanAdvisor;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
 import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.service.BulkCancelResult;
+import jpabook.jpashop.service.OrderService;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
 
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,9 +29,12 @@ import static java.util.stream.Collectors.*;
 @RestController
 @RequiredArgsConstructor
 public class OrderApiController {
+    private static final int MAX_RANGE_LIMIT = 1000;
 
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final OrderService orderService;
+    private final FetchPlanAdvisor fetchPlanAdvisor;
 
     /**
      * 엔티티 조회
@@ -36,7 +47,7 @@ public class OrderApiController {
      */
     @GetMapping("/api/v1/orders")
     public List<Order> ordersV1(){
-        List<Order> result = orderRepository.findAll(new OrderSearch());
+        List<Order> result = orderRepository.findAll(new OrderSearch(), fetchPlanAdvisor.resolvePaged(Order.class, FetchPlan.DEFAULT));
         result.stream()
                 .forEach(o->{
                     o.getMember().getName();
@@ -61,7 +72,7 @@ public class OrderApiController {
      */
     @GetMapping("/api/v2/orders")
     public List<OrderDto> ordersV2(){
-        List<Order> orderList= orderRepository.findAll(new OrderSearch());
+        List<Order> orderList= orderRepository.findAll(new OrderSearch(), fetchPlanAdvisor.resolvePaged(Order.class, FetchPlan.DEFAULT));
         List<OrderDto> result = orderList.stream()
                 .map(OrderDto::new)
                 .collect(toList());
@@ -131,11 +142,25 @@ public class OrderApiController {
      * root1번 컬렉션 1번
      * ToOne관계들을 한번에 조회하고, 여기서 얻은 식별자들로 OrderItem을 한꺼번에 조회후 조합
      * Map을 사용해 매칭성능 향상
+     *
+     * 주문일 범위(from, to)를 지정하면 보관된 주문도 포함해서 주문일, id 순으로 limit 건씩 반환한다.
+     * 다음 페이지는 마지막 주문의 orderDate, orderId 를 lastOrderDate, lastId 로 넘긴다.
      * @return
      */
     @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> orderv5(){
-        return orderQueryRepository.findAllByDto_optimization();
+    public List<OrderQueryDto> orderv5(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "lastOrderDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime lastOrderDate,
+            @RequestParam(value = "lastId", required = false) Long lastId,
+            @RequestParam(value = "limit", defaultValue = "100") int limit){
+        if(from == null && to == null){
+            return orderQueryRepository.findAllByDto_optimization();
+        }
+        return orderQueryRepository.findAllByDto_optimization(
+                from == null ? LocalDate.EPOCH.atStartOfDay() : from,
+                to == null ? LocalDateTime.now() : to,
+                lastOrderDate, lastId, Math.min(Math.max(limit, 1), MAX_RANGE_LIMIT));
     }
 
 
@@ -161,6 +186,23 @@ public class OrderApiController {
         return result;
     }
 
+    /**
+     * 주문 일괄취소
+     *
+     * 이미 배송완료된 주문은 건너뛰고 취소건수, 건너뛴 건수를 반환한다.
+     */
+    @PostMapping("/api/v1/orders/cancel")
+    public BulkCancelResult cancelOrders(@RequestBody @Valid BulkCancelRequest request){
+        return orderService.cancelOrders(request.getOrderIds());
+    }
+
+    @Data
+    static class BulkCancelRequest{
+        @NotEmpty
+        @Size(max = OrderService.MAX_BULK_CANCEL)
+        private List<Long> orderIds;
+    }
+
     @Data
     static class OrderDto{
         private Long orderId;
@@ -0,0 +1,86 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.domain.OrderChangeType;
+import jpabook.jpashop.push.OrderPushBroadcaster;
+import jpabook.jpashop.service.ChangeFeedService;
+import jpabook.jpashop.service.ChangeFeedService.ChangeBatch;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 주문 변경 피드 (주문, 취소, 배송완료)
+ * 응답의 nextCursor 를 다음 요청의 after 로 넘긴다. hasMore 가 false 면 잠시 후 다시 조회한다.
+ * ex) /api/v1/order-changes?after=0&limit=500
+ *
+ * 조회 대신 구독하려면 SSE 로 연결한다. (회원 또는 변경 종류로 거른다)
+ * ex) /api/v1/order-changes/stream?memberId=1, /api/v1/order-changes/stream?status=CANCELLED
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderChangeApiController {
+    private static final int MAX_LIMIT = 1000;
+
+    private final ChangeFeedService changeFeedService;
+    private final OrderPushBroadcaster orderPushBroadcaster;
+
+    @GetMapping("/api/v1/order-changes")
+    public ChangeBatchDto changes(@RequestParam(value = "after", defaultValue = "0") long after,
+                                  @RequestParam(value = "limit", defaultValue = "500") int limit){
+        ChangeBatch batch = changeFeedService.findChanges(after, Math.min(Math.max(limit, 1), MAX_LIMIT));
+        return new ChangeBatchDto(batch);
+    }
+
+    @GetMapping(value = "/api/v1/order-changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(value = "memberId", required = false) Long memberId,
+                             @RequestParam(value = "status", required = false) OrderChangeType status,
+                             @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId){
+        return orderPushBroadcaster.subscribe(memberId, status, lastEventId);
+    }
+
+    @GetMapping("/api/v1/order-changes/stream/stats")
+    public Map<String, Object> streamStats(){
+        return orderPushBroadcaster.stats();
+    }
+
+    @Data
+    static class ChangeBatchDto{
+        private List<OrderChangeDto> changes;
+        private long nextCursor;
+        private boolean hasMore;
+
+        public ChangeBatchDto(ChangeBatch batch) {
+            this.changes = batch.getChanges().stream().map(OrderChangeDto::new).collect(Collectors.toList());
+            this.nextCursor = batch.getNextCursor();
+            this.hasMore = batch.isHasMore();
+        }
+    }
+
+    @Data
+    static class OrderChangeDto{
+        private Long seq;
+        private Long orderId;
+        private Long memberId;
+        private OrderChangeType type;
+        private LocalDateTime changedAt;
+
+        public OrderChangeDto(OrderChange change) {
+            this.seq = change.getSeq();
+            this.orderId = change.getOrderId();
+            this.memberId = change.getMemberId();
+            this.type = change.getType();
+            this.changedAt = change.getChangedAt();
+        }
+    }
+}
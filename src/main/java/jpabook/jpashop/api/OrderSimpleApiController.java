@@ -5,6 +5,8 @@ import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.fetch.FetchPlan;
+import jpabook.jpashop.repository.fetch.FetchPlanAdvisor;
 import jpabook.jpashop.repository.order.simpleQuery.OrderSimpleQueryDto;
 import jpabook.jpashop.repository.order.simpleQuery.OrderSimpleQueryRepository;
 import lombok.AllArgsConstructor;
@@ -22,6 +24,7 @@ import java.util.stream.Collectors;
 public class OrderSimpleApiController {
     private final OrderRepository orderRepository;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final FetchPlanAdvisor fetchPlanAdvisor;
 
 
     /**
@@ -38,7 +41,7 @@ public class OrderSimpleApiController {
      */
     @GetMapping("/api/v1/simple-orders")
     public List<Order> ordersV1(){
-        List<Order> all = orderRepository.findAllByString(new OrderSearch());
+        List<Order> all = orderRepository.findAllByString(new OrderSearch(), fetchPlanAdvisor.resolvePaged(Order.class, FetchPlan.DEFAULT));
         for(Order order : all){
             order.getMember().getName();    //Lazy 강제 초기화
             order.getDelivery().getAddress();   //Lazy 강제 초기화
@@ -54,7 +57,7 @@ public class OrderSimpleApiController {
      */
     @GetMapping("/api/v2/simple-orders")
     public Result ordersV2(){
-        List<SimpleOrderDto> collect = orderRepository.findAllByString(new OrderSearch()).stream()
+        List<SimpleOrderDto> collect = orderRepository.findAllByString(new OrderSearch(), fetchPlanAdvisor.resolvePaged(Order.class, FetchPlan.DEFAULT)).stream()
                 .map(SimpleOrderDto::new)
                 .collect(Collectors.toList());
         return new Result(collect);
@@ -0,0 +1,159 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.report.ReportFormat;
+import jpabook.jpashop.report.ReportJob;
+import jpabook.jpashop.report.ReportService;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 정산 리포트 비동기 작업 API
+ *
+ * 작업 제출 > 진행률 조회 > 완료되면 파일 다운로드
+ */
+@RestController
+@RequiredArgsConstructor
+public class ReportApiController {
+    //톰캣 NIO 커넥터의 sendfile (파일 > 소켓 직접 전송)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ReportService reportService;
+
+    @PostMapping("/api/v1/reports")
+    public ResponseEntity<ReportJobDto> submit(@RequestBody @Valid ReportRequest request){
+        ReportJob job = reportService.submit(request.getFrom(), request.getTo(),
+                request.getFormat() == null ? ReportFormat.CSV : request.getFormat());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(new ReportJobDto(job));
+    }
+
+    @GetMapping("/api/v1/reports/{id}")
+    public ReportJobDto status(@PathVariable("id") String id){
+        return new ReportJobDto(findJob(id));
+    }
+
+    /**
+     * 완료된 리포트 다운로드
+     * 힙에 올리지 않고 톰캣 sendfile 로 보낸다. sendfile 을 쓸 수 없으면 FileChannel.transferTo 로 응답 스트림에 복사한다.
+     * Range 헤더(단일 구간)를 지원해서 끊긴 다운로드를 이어받을 수 있다.
+     */
+    @GetMapping("/api/v1/reports/{id}/file")
+    public void download(@PathVariable("id") String id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ReportJob job = findJob(id);
+        if(!job.isDone()){
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "리포트가 아직 완료되지 않았습니다. status=" + job.getStatus());
+        }
+
+        long length = job.getBytes();
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if(rangeHeader != null){
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if(ranges.size() != 1){
+                    throw new IllegalArgumentException("단일 구간만 지원합니다.");
+                }
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        long count = end - start + 1;
+
+        response.setContentType(job.getFormat().getContentType());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"orders-" + job.getId() + job.getFormat().getExtension() + "\"");
+        response.setContentLengthLong(count);
+
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))){
+            request.setAttribute(SENDFILE_FILENAME, job.getFile().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel file = FileChannel.open(job.getFile(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = file.transferTo(position, end + 1 - position, out);
+                if (transferred <= 0) {
+                    //파일이 Content-Length 보다 짧아졌다. 남은 길이를 채울 수 없으므로 응답을 끊는다.
+                    throw new EOFException("리포트 파일이 예상보다 짧습니다. id=" + id + ", position=" + position + ", end=" + end);
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private ReportJob findJob(String id){
+        return reportService.findJob(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "리포트 작업이 없습니다. id=" + id));
+    }
+
+    @Data
+    static class ReportRequest{
+        @NotNull
+        private LocalDateTime from;
+        @NotNull
+        private LocalDateTime to;
+        private ReportFormat format;
+    }
+
+    @Data
+    static class ReportJobDto{
+        private String id;
+        private String status;
+        private ReportFormat format;
+        private int progress;
+        private long totalOrders;
+        private long ordersWritten;
+        private long rowsWritten;
+        private long bytes;
+        private String error;
+        private LocalDateTime createdAt;
+        private LocalDateTime finishedAt;
+
+        public ReportJobDto(ReportJob job) {
+            this.id = job.getId();
+            this.status = job.getStatus().name();
+            this.format = job.getFormat();
+            this.progress = job.getProgress();
+            this.totalOrders = job.getTotalOrders();
+            this.ordersWritten = job.getOrdersWritten();
+            this.rowsWritten = job.getRowsWritten();
+            this.bytes = job.getBytes();
+            this.error = job.getError();
+            this.createdAt = job.getCreatedAt();
+            this.finishedAt = job.getFinishedAt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.reservation.Hold;
+import jpabook.jpashop.reservation.ReservationService;
+import jpabook.jpashop.reservation.StockLedger;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 결제 화면 재고 예약
+ * 예약 -> (hold-ttl-seconds 안에) 주문 또는 반납. 둘 다 안 하면 만료되어 재고로 돌아간다.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.reservation", name = "enabled", havingValue = "true")
+public class ReservationApiController {
+    private final ReservationService reservationService;
+    private final StockLedger stockLedger;
+
+    @PostMapping("/api/v1/holds")
+    public HoldDto hold(@RequestBody @Valid HoldRequest request){
+        return new HoldDto(reservationService.hold(request.getItemId(), request.getQuantity()));
+    }
+
+    @GetMapping("/api/v1/holds/{id}")
+    public HoldDto find(@PathVariable("id") String id){
+        return new HoldDto(stockLedger.find(id));
+    }
+
+    @DeleteMapping("/api/v1/holds/{id}")
+    public void release(@PathVariable("id") String id){
+        reservationService.release(id);
+    }
+
+    @PostMapping("/api/v1/holds/{id}/order")
+    public HoldOrderResponse order(@PathVariable("id") String id, @RequestBody @Valid HoldOrderRequest request){
+        return new HoldOrderResponse(reservationService.order(request.getMemberId(), id));
+    }
+
+    @GetMapping("/api/v1/holds/stats")
+    public Map<String, Object> stats(){
+        return stockLedger.stats();
+    }
+
+    @Data
+    static class HoldRequest{
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int quantity;
+    }
+
+    @Data
+    static class HoldOrderRequest{
+        @NotNull
+        private Long memberId;
+    }
+
+    @Data
+    static class HoldDto{
+        private String id;
+        private Long itemId;
+        private int quantity;
+        private LocalDateTime expiresAt;
+        private String state;
+
+        public HoldDto(Hold hold) {
+            this.id = hold.getId();
+            this.itemId = hold.getItemId();
+            this.quantity = hold.getQuantity();
+            this.expiresAt = hold.getExpiresAt();
+            this.state = hold.getState().name();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class HoldOrderResponse{
+        private Long orderId;
+    }
+}
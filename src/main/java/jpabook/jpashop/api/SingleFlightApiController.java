@@ -0,0 +1,22 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.repository.support.SingleFlight;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 조회 합치기 현황 (조회별 호출 수, 실행 수, 합쳐진 비율)
+ */
+@RestController
+@RequiredArgsConstructor
+public class SingleFlightApiController {
+    private final SingleFlight singleFlight;
+
+    @GetMapping("/api/single-flight/stats")
+    public Map<String, Object> stats(){
+        return singleFlight.stats();
+    }
+}
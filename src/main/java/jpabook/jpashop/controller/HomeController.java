@@ -1,16 +1,22 @@
 package jpabook.jpashop.controller;
 
+import jpabook.jpashop.analytics.Leaderboard;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
 @Controller
 @Slf4j
+@RequiredArgsConstructor
 public class HomeController {
+    private final Leaderboard leaderboard;
 
     @GetMapping("/")
-    public String home(){
+    public String home(Model model){
         log.info("home controller");
+        model.addAttribute("bestSellers", leaderboard.top());
         return "home";
     }
 }
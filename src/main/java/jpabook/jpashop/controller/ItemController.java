@@ -1,7 +1,8 @@
 package jpabook.jpashop.controller;
 
+import jpabook.jpashop.analytics.Leaderboard;
 import jpabook.jpashop.domain.item.Book;
-import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
 import jpabook.jpashop.service.ItemService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -17,6 +18,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ItemController {
     private final ItemService itemService;
+    private final Leaderboard leaderboard;
 
     @GetMapping("/items/new")
     public String createForm(Model model){
@@ -39,8 +41,9 @@ public class ItemController {
 
     @GetMapping("/items")
     public String list(Model model){
-        List<Item> items = itemService.findItems();
+        List<ItemQueryDto> items = itemService.findItemViews();
         model.addAttribute("items",items);
+        model.addAttribute("bestSellers", leaderboard.top());
         return "items/itemList";
     }
 
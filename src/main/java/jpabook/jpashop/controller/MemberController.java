@@ -2,6 +2,7 @@ package jpabook.jpashop.controller;
 
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.repository.member.query.MemberViewDto;
 import jpabook.jpashop.service.MemberService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -41,7 +42,7 @@ public class MemberController {
 
     @GetMapping("/members")
     public String list(Model model){
-        List<Member> members = memberService.findMembers();
+        List<MemberViewDto> members = memberService.findMemberViews();
         model.addAttribute("members",members);
         return "members/memberList";
     }
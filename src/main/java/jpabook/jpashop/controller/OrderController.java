@@ -1,30 +1,36 @@
 package jpabook.jpashop.controller;
 
-import jpabook.jpashop.domain.Member;
-import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
-import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
+import jpabook.jpashop.repository.member.query.MemberViewDto;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
 public class OrderController {
+    private static final int MAX_ORDER_ROWS = 1000;
+
     private final OrderService orderService;
     private final MemberService memberService;
     private final ItemService itemService;
 
+    @Value("${jpashop.orders.page-size:100}")
+    private int pageSize;
+
     @GetMapping("/order")
     public String createForm(Model model){
-        List<Member> members = memberService.findMembers();
-        List<Item> items = itemService.findItems();
+        List<MemberViewDto> members = memberService.findMemberViews();
+        List<ItemQueryDto> items = itemService.findItemViews();
         model.addAttribute("members",members);
         model.addAttribute("items", items);
 
@@ -40,10 +46,12 @@ public class OrderController {
         return "redirect:/orders";
     }
 
+    /**
+     * 최대 1000건을 페이지 단위로 조회하면서 렌더링한다. (OrderViewPages)
+     */
     @GetMapping("/orders")
-    public String orderList(Model model, @ModelAttribute OrderSearch orderSearch){
-        List<Order> orders = orderService.findOrders(orderSearch);
-        model.addAttribute("orders",orders);
+    public String orderList(Model model, @ModelAttribute OrderSearch orderSearch, HttpServletResponse response){
+        model.addAttribute("orders", new OrderViewPages(orderService, orderSearch, pageSize, MAX_ORDER_ROWS, response));
         return "orders/orderList";
     }
 
@@ -0,0 +1,86 @@
+package jpabook.jpashop.controller;
+
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.repository.order.query.OrderViewDto;
+import jpabook.jpashop.service.OrderService;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 주문 목록 화면의 데이터 드라이버
+ *
+ * th:each 가 순회하는 동안 keyset 페이지 단위로 조회한다. (페이지마다 짧은 읽기 트랜잭션)
+ * 다음 페이지를 조회하기 전에 응답 버퍼를 flush 해서, 앞쪽 행은 뒤쪽 페이지 조회/렌더링을 기다리지 않고 먼저 나간다.
+ * 메모리에는 한 페이지만 올라간다.
+ * spring.thymeleaf.servlet.produce-partial-output-while-processing 이 true(기본값)여야 렌더링 중간에 응답으로 나간다.
+ */
+class OrderViewPages implements Iterable<OrderViewDto> {
+    private final OrderService orderService;
+    private final OrderSearch orderSearch;
+    private final int pageSize;
+    private final int maxRows;
+    private final HttpServletResponse response;
+
+    OrderViewPages(OrderService orderService, OrderSearch orderSearch, int pageSize, int maxRows, HttpServletResponse response) {
+        this.orderService = orderService;
+        this.orderSearch = orderSearch;
+        this.pageSize = pageSize;
+        this.maxRows = maxRows;
+        this.response = response;
+    }
+
+    @Override
+    public Iterator<OrderViewDto> iterator() {
+        return new Iterator<>() {
+            private List<OrderViewDto> page = Collections.emptyList();
+            private int index;
+            private int fetched;
+            private long lastId;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) {
+                    return true;
+                }
+                if (last) {
+                    return false;
+                }
+                if (fetched > 0) {
+                    flush();
+                }
+                int limit = Math.min(pageSize, maxRows - fetched);
+                page = orderService.findOrderViews(orderSearch, lastId, limit);
+                index = 0;
+                fetched += page.size();
+                last = page.size() < limit || fetched >= maxRows;
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+                return !page.isEmpty();
+            }
+
+            @Override
+            public OrderViewDto next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(index++);
+            }
+        };
+    }
+
+    private void flush() {
+        try {
+            response.getWriter().flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
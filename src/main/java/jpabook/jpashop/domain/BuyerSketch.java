@@ -0,0 +1,48 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * 일자별 구매 회원 HyperLogLog sketch
+ * ITEM / CATEGORY = 그 상품(카테고리) 구매 회원, DAY = 주문한 회원 (targetId 0)
+ */
+@Entity
+@Table(name = "buyer_sketch",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"scope", "target_id", "sketch_date"}),
+        indexes = @Index(columnList = "sketch_date"))
+@Getter @Setter
+public class BuyerSketch {
+    protected BuyerSketch() {
+    }
+
+    @Id @GeneratedValue
+    @Column(name = "buyer_sketch_id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private SketchScope scope;
+
+    @Column(name = "target_id")
+    private Long targetId;
+
+    @Column(name = "sketch_date")
+    private LocalDate sketchDate;
+
+    @Lob
+    private byte[] registers;
+
+    //==생성 메서드==//
+    public static BuyerSketch create(SketchScope scope, Long targetId, LocalDate sketchDate, byte[] registers){
+        BuyerSketch sketch = new BuyerSketch();
+        sketch.scope = scope;
+        sketch.targetId = targetId;
+        sketch.sketchDate = sketchDate;
+        sketch.registers = registers;
+        return sketch;
+    }
+}
@@ -3,6 +3,7 @@ package jpabook.jpashop.domain;
 import jpabook.jpashop.domain.item.Item;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -33,11 +34,17 @@ public class Category {
     private List<Category> child = new ArrayList<>();
 
     //==연관관계 메소드==//
+    /**
+     * 부모, 자식 목록은 이미 읽혀 있을 때만 고친다. (읽히지 않은 목록은 나중에 DB 에서 읽는다)
+     */
     public void addChildCategory(Category child){
-        if(child.getParent()!=null){
-            child.getParent().getChild().remove(child);
+        Category previous = child.getParent();
+        if(previous != null && previous != this && Hibernate.isInitialized(previous) && Hibernate.isInitialized(previous.getChild())){
+            previous.getChild().remove(child);
         }
-        this.child.add(child);
         child.setParent(this);
+        if(Hibernate.isInitialized(this.child) && !this.child.contains(child)){
+            this.child.add(child);
+        }
     }
 }
@@ -10,6 +10,7 @@ import static javax.persistence.FetchType.*;
 
 @Entity
 @Getter @Setter
+@NamedEntityGraph(name = "Delivery.withOrder", attributeNodes = @NamedAttributeNode("order"))
 public class Delivery {
     @Id @GeneratedValue
     @Column(name = "delivery_id")
@@ -0,0 +1,34 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * 상품별 누적 판매수량 체크포인트 (Leaderboard)
+ */
+@Entity
+@Table(name = "item_sales_count")
+@Getter @Setter
+public class ItemSalesCount {
+    protected ItemSalesCount() {
+    }
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private long units;
+
+    //==생성 메서드==//
+    public static ItemSalesCount create(Long itemId, long units){
+        ItemSalesCount count = new ItemSalesCount();
+        count.itemId = itemId;
+        count.units = units;
+        return count;
+    }
+}
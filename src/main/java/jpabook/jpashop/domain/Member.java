@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity @Getter @Setter
+@NamedEntityGraph(name = "Member.withOrders", attributeNodes = @NamedAttributeNode("orders"))
 public class Member {
 
     @Id @GeneratedValue
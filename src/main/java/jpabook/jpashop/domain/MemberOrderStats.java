@@ -0,0 +1,42 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * 회원별 주문 통계
+ * 주문, 취소할 때 같은 트랜잭션에서 update 로 증감하므로 회원의 주문 목록을 읽지 않고 보여줄 수 있다.
+ * orderCount, totalSpend 는 취소되지 않은 주문 기준, lastOrderDate 는 취소 여부와 관계없이 마지막 주문일
+ */
+@Entity
+@Table(name = "member_order_stats")
+@Getter
+public class MemberOrderStats {
+    protected MemberOrderStats() {
+    }
+
+    @Id
+    @Column(name = "member_id")
+    private Long memberId;
+
+    private long orderCount;
+
+    private long totalSpend;
+
+    private LocalDateTime lastOrderDate;
+
+    //==생성 메서드==//
+    public static MemberOrderStats create(Long memberId, long orderCount, long totalSpend, LocalDateTime lastOrderDate){
+        MemberOrderStats stats = new MemberOrderStats();
+        stats.memberId = memberId;
+        stats.orderCount = orderCount;
+        stats.totalSpend = totalSpend;
+        stats.lastOrderDate = lastOrderDate;
+        return stats;
+    }
+}
@@ -2,6 +2,7 @@ package jpabook.jpashop.domain;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.Hibernate;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -12,7 +13,18 @@ import java.util.List;
 import static javax.persistence.FetchType.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_order_date", columnList = "order_date"),
+        @Index(name = "idx_orders_member_order_date", columnList = "member_id, order_date")})
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "Order.withMember", attributeNodes = @NamedAttributeNode("member")),
+        @NamedEntityGraph(name = "Order.withMemberDelivery", attributeNodes = {
+                @NamedAttributeNode("member"), @NamedAttributeNode("delivery")}),
+        @NamedEntityGraph(name = "Order.withAll", attributeNodes = {
+                @NamedAttributeNode("member"), @NamedAttributeNode("delivery"),
+                @NamedAttributeNode(value = "orderItems", subgraph = "orderItems")},
+                subgraphs = @NamedSubgraph(name = "orderItems", attributeNodes = @NamedAttributeNode("item")))
+})
 @Getter @Setter
 public class Order {
     protected Order() {
@@ -39,12 +51,19 @@ public class Order {
     private List<OrderItem> orderItems = new ArrayList<>();
 
     //== 연관관계 메소드 ==//
+    /*
+     * 반대편 목록(Member.orders, Order.orderItems)은 이미 읽혀 있을 때만 고친다.
+     * 읽히지 않은 목록은 나중에 DB 에서 읽으므로 연관관계 주인(외래키)만 바꾸면 되고,
+     * 여기서 목록을 건드리면 주문 하나 추가하려고 회원의 주문 전체를 읽게 된다.
+     */
     public void setMember(Member member){
-        if(this.member!=null){
-            member.getOrders().remove(this);
+        if(this.member != null && this.member != member && isLoaded(this.member) && isLoaded(this.member.getOrders())){
+            this.member.getOrders().remove(this);
         }
         this.member = member;
-        member.getOrders().add(this);
+        if(member != null && isLoaded(member) && isLoaded(member.getOrders()) && !member.getOrders().contains(this)){
+            member.getOrders().add(this);
+        }
     }
 
     public void addDelivery(Delivery delivery){
@@ -53,12 +72,18 @@ public class Order {
     }
 
     public void addOrderItem(OrderItem orderItem){
-        if(!orderItems.contains(orderItem)) orderItems.add(orderItem);
-
-        if(orderItem.getOrder() != null){
-            orderItem.getOrder().getOrderItems().remove(orderItem);
+        Order previous = orderItem.getOrder();
+        if(previous != null && previous != this && isLoaded(previous) && isLoaded(previous.getOrderItems())){
+            previous.getOrderItems().remove(orderItem);
         }
         orderItem.setOrder(this);
+        if(isLoaded(orderItems) && !orderItems.contains(orderItem)){
+            orderItems.add(orderItem);
+        }
+    }
+
+    private static boolean isLoaded(Object proxyOrCollection){
+        return Hibernate.isInitialized(proxyOrCollection);
     }
 
     //==생성 메서드==//
@@ -83,6 +108,7 @@ public class Order {
             throw new IllegalStateException("이미 배송완료된 상품은 취소가 불가능합니다.");
         }
         setStatus(OrderStatus.CANCEL);
+        delivery.setStatus(DeliveryStatus.CANCEL);
 
         for(OrderItem orderItem: orderItems){
             orderItem.cancel();
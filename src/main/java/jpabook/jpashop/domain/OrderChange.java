@@ -0,0 +1,43 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 주문 변경 기록 (변경 피드)
+ * 주문, 취소, 배송완료와 같은 트랜잭션에서 insert 된다. seq 는 insert 순서로 증가한다.
+ */
+@Entity
+@Table(name = "order_change", indexes = @Index(columnList = "order_id"))
+@Getter
+public class OrderChange {
+    protected OrderChange() {
+    }
+
+    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private OrderChangeType type;
+
+    private LocalDateTime changedAt;
+
+    //==생성 메서드==//
+    public static OrderChange create(Long orderId, Long memberId, OrderChangeType type){
+        OrderChange change = new OrderChange();
+        change.orderId = orderId;
+        change.memberId = memberId;
+        change.type = type;
+        change.changedAt = LocalDateTime.now();
+        return change;
+    }
+}
@@ -11,6 +11,7 @@ import static javax.persistence.FetchType.*;
 
 @Entity
 @Table(name = "order_item")
+@NamedEntityGraph(name = "OrderItem.withItem", attributeNodes = @NamedAttributeNode("item"))
 @Getter @Setter
 public class OrderItem {
     @Id @GeneratedValue
@@ -39,7 +40,7 @@ public class OrderItem {
         orderItem.setItem(item);
         orderItem.setOrderPrice(orderPrice);
         orderItem.setCount(count);
-        item.removeQuantity(count);
+        //재고 차감은 StockService 가 조건부 update 로 한다. (변경감지로 쓰면 동시 증가분을 덮어쓴다)
         return orderItem;
     }
 
@@ -0,0 +1,33 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.persistence.*;
+
+/**
+ * 상품별 일 매출 집계 (주문 - 취소)
+ * SalesAnalytics 가 메모리 집계를 주기적으로 저장하고, 기동시 다시 읽는다.
+ */
+@Entity
+@Table(name = "sales_rollup", indexes = @Index(columnList = "sales_date"))
+@Getter @Setter
+public class SalesRollup {
+    protected SalesRollup() {
+    }
+
+    @EmbeddedId
+    private SalesRollupId id;
+
+    private long revenue;
+    private int units;
+
+    //==생성 메서드==//
+    public static SalesRollup create(SalesRollupId id, long revenue, int units){
+        SalesRollup rollup = new SalesRollup();
+        rollup.id = id;
+        rollup.revenue = revenue;
+        rollup.units = units;
+        return rollup;
+    }
+}
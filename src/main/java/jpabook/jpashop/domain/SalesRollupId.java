@@ -0,0 +1,28 @@
+package jpabook.jpashop.domain;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Getter
+@EqualsAndHashCode
+public class SalesRollupId implements Serializable {
+    protected SalesRollupId() {
+    }
+
+    public SalesRollupId(Long itemId, LocalDate salesDate) {
+        this.itemId = itemId;
+        this.salesDate = salesDate;
+    }
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "sales_date")
+    private LocalDate salesDate;
+}
@@ -0,0 +1,40 @@
+package jpabook.jpashop.domain;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 확정된 재고 예약 (결제 대기중인 장바구니가 잡고 있는 재고)
+ * row 가 있는 예약의 수량은 이미 Item.stockQuantity 에서 빠져 있다.
+ * 기동시 StockLedger 가 이 테이블로 예약 상태를 복구한다.
+ */
+@Entity
+@Table(name = "stock_hold", indexes = @Index(columnList = "item_id"))
+@Getter
+public class StockHold {
+    protected StockHold() {
+    }
+
+    @Id
+    @Column(name = "stock_hold_id", length = 36)
+    private String id;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private int quantity;
+
+    private LocalDateTime expiresAt;
+
+    //==생성 메서드==//
+    public static StockHold create(String id, Long itemId, int quantity, LocalDateTime expiresAt){
+        StockHold hold = new StockHold();
+        hold.id = id;
+        hold.itemId = itemId;
+        hold.quantity = quantity;
+        hold.expiresAt = expiresAt;
+        return hold;
+    }
+}
@@ -0,0 +1,42 @@
+package jpabook.jpashop.domain.archive;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Getter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 보관 주문
+ * 주문, 회원이름, 배송정보를 한 row 로 합쳐서 저장한다. 연관관계 없이 읽기 전용으로 사용
+ */
+@Entity
+@Table(name = "orders_archive", indexes = {
+        @Index(name = "idx_orders_archive_order_date", columnList = "order_date"),
+        @Index(name = "idx_orders_archive_member_order_date", columnList = "member_id, order_date")})
+@Getter
+public class OrderArchive {
+    protected OrderArchive() {
+    }
+
+    @Id
+    @Column(name = "order_id")
+    private Long id;
+
+    private Long memberId;
+    private String memberName;
+    private LocalDateTime orderDate;
+
+    @Enumerated(EnumType.STRING)
+    private OrderStatus status;
+
+    @Enumerated(EnumType.STRING)
+    private DeliveryStatus deliveryStatus;
+
+    @Embedded
+    private Address address;
+
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,29 @@
+package jpabook.jpashop.domain.archive;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+
+/**
+ * 보관 주문상품
+ * 상품명을 함께 저장해서 상품 테이블과 조인하지 않는다.
+ */
+@Entity
+@Table(name = "order_item_archive", indexes = @Index(name = "idx_order_item_archive_order_id", columnList = "order_id"))
+@Getter
+public class OrderItemArchive {
+    protected OrderItemArchive() {
+    }
+
+    @Id
+    @Column(name = "order_item_id")
+    private Long id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    private Long itemId;
+    private String itemName;
+    private int orderPrice;
+    private int count;
+}
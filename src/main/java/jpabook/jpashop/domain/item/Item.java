@@ -22,9 +22,16 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    //분할 재고 수 (0 = 분할하지 않음). 분할하면 재고는 StockShard 에서 차감한다.
+    private int stockShards;
+
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
+    public boolean isShardedStock(){
+        return stockShards > 0;
+    }
+
     //==비지니스 로직 ==//
     public void addStockQuantity(int quantity){
         stockQuantity+=quantity;
@@ -0,0 +1,39 @@
+package jpabook.jpashop.domain.item;
+
+import lombok.Getter;
+
+import javax.persistence.*;
+
+/**
+ * 분할 재고
+ * 주문이 몰리는 상품의 재고를 여러 row 로 나눠서 row lock 경합을 분산한다.
+ * 상품의 전체 재고 = Item.stockQuantity + 모든 StockShard.quantity
+ */
+@Entity
+@Table(name = "stock_shard", uniqueConstraints = @UniqueConstraint(columnNames = {"item_id", "shard_no"}))
+@Getter
+public class StockShard {
+    protected StockShard() {
+    }
+
+    @Id @GeneratedValue
+    @Column(name = "stock_shard_id")
+    private Long id;
+
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "shard_no")
+    private int shardNo;
+
+    private int quantity;
+
+    //==생성 메서드==//
+    public static StockShard create(Long itemId, int shardNo, int quantity){
+        StockShard shard = new StockShard();
+        shard.itemId = itemId;
+        shard.shardNo = shardNo;
+        shard.quantity = quantity;
+        return shard;
+    }
+}
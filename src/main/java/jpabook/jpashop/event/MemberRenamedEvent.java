@@ -0,0 +1,16 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 회원가입, 회원이름 변경
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class MemberRenamedEvent {
+    private final Long memberId;
+    private final String name;
+}
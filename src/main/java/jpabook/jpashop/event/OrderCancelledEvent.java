@@ -0,0 +1,22 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 주문 취소 이벤트
+ * orderDate 는 취소시각이 아니라 원래 주문일
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderCancelledEvent {
+    private final Long orderId;
+    private final Long memberId;
+    private final LocalDateTime orderDate;
+    private final List<OrderLine> lines;
+}
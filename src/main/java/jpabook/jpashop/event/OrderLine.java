@@ -0,0 +1,14 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderLine {
+    private final Long itemId;
+    private final int orderPrice;
+    private final int count;
+}
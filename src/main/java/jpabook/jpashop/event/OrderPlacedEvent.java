@@ -0,0 +1,22 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 주문 완료 이벤트
+ * 주문 트랜잭션 안에서 발행되고, 리스너는 @TransactionalEventListener 로 커밋 후에 받는다.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class OrderPlacedEvent {
+    private final Long orderId;
+    private final Long memberId;
+    private final LocalDateTime orderDate;
+    private final List<OrderLine> lines;
+}
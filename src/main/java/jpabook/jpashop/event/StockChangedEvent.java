@@ -0,0 +1,26 @@
+package jpabook.jpashop.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * DB 재고 변경
+ * 상품 등록/수정(ITEM)과 StockService 를 거친 주문, 취소, 예약의 차감/복구(ORDER) 모두 발행한다.
+ * 증감량이라서 이벤트 도착 순서가 바뀌어도 합계는 같다.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class StockChangedEvent {
+    private final Long itemId;
+    private final int delta;
+    private final Cause cause;
+
+    public enum Cause {
+        /** 상품 등록/수정 */
+        ITEM,
+        /** 주문, 취소, 예약 (주문 이벤트나 예약 원장이 따로 반영하는 변경) */
+        ORDER
+    }
+}
@@ -17,4 +17,8 @@ public class NotEnoughStockException extends RuntimeException{
         super(cause);
     }
 
+    protected NotEnoughStockException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+
 }
@@ -0,0 +1,13 @@
+package jpabook.jpashop.exception;
+
+/**
+ * 품절 빠른 거절용 예외
+ * 미리 만들어 둔 인스턴스 하나를 재사용한다. stack trace 를 채우지 않고 suppressed 도 붙지 않는다.
+ */
+public class SoldOutException extends NotEnoughStockException{
+    public static final SoldOutException INSTANCE = new SoldOutException();
+
+    private SoldOutException() {
+        super("need more stock", null, false, false);
+    }
+}
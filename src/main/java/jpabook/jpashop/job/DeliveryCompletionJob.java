@@ -0,0 +1,167 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.DeliveryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 택배사 배송완료 파일(배송id CSV) 처리 배치
+ *
+ * inbox 디렉토리의 *.csv 파일을 chunk-size 단위로 나눠 제한된 스레드풀에서 일괄 update 한다.
+ * chunk 하나가 트랜잭션 하나라서 주문취소와 오래 경합하지 않는다.
+ * 완료된 chunk 번호는 [파일명].ckpt 에 기록하고, 재시작하면 기록된 chunk 는 건너뛴다.
+ * 처리가 끝난 파일은 [파일명].done 으로 이름을 바꾼다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jpashop.delivery-job", name = "inbox")
+public class DeliveryCompletionJob {
+    private static final String CHECKPOINT_SUFFIX = ".ckpt";
+    private static final String DONE_SUFFIX = ".done";
+
+    private final DeliveryService deliveryService;
+    private final Path inbox;
+    private final int chunkSize;
+    private final ThreadPoolExecutor executor;
+
+    public DeliveryCompletionJob(DeliveryService deliveryService,
+                                 @Value("${jpashop.delivery-job.inbox}") String inbox,
+                                 @Value("${jpashop.delivery-job.chunk-size:500}") int chunkSize,
+                                 @Value("${jpashop.delivery-job.threads:4}") int threads) {
+        this.deliveryService = deliveryService;
+        this.inbox = Paths.get(inbox);
+        this.chunkSize = chunkSize;
+        //큐가 가득 차면 파일을 읽는 스레드가 직접 실행 > 읽기 속도가 처리 속도를 넘지 않는다
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.delivery-job.poll-interval:60000}")
+    public void pollInbox() throws IOException {
+        if(!Files.isDirectory(inbox)){
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> list = Files.list(inbox)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(".csv"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for(Path file : files){
+            run(file);
+            Files.move(file, file.resolveSibling(file.getFileName() + DONE_SUFFIX), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public DeliveryJobReport run(Path file) throws IOException {
+        Path checkpointFile = file.resolveSibling(file.getFileName() + CHECKPOINT_SUFFIX);
+        Set<Integer> doneChunks = readCheckpoint(checkpointFile);
+
+        long start = System.nanoTime();
+        AtomicInteger updated = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        int chunkNo = 0;
+        int skippedChunks = 0;
+        long ids = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Long> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Long deliveryId = parseDeliveryId(line);
+                if(deliveryId == null){
+                    continue;
+                }
+                ids++;
+                chunk.add(deliveryId);
+                if(chunk.size() == chunkSize){
+                    skippedChunks += submit(chunkNo++, chunk, doneChunks, checkpointFile, updated, futures);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if(!chunk.isEmpty()){
+                skippedChunks += submit(chunkNo++, chunk, doneChunks, checkpointFile, updated, futures);
+            }
+        }
+        awaitAll(futures);
+        Files.deleteIfExists(checkpointFile);
+
+        DeliveryJobReport report = new DeliveryJobReport(file.getFileName().toString(), ids, chunkNo, skippedChunks,
+                updated.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("delivery completion job {}", report);
+        return report;
+    }
+
+    private int submit(int chunkNo, List<Long> chunk, Set<Integer> doneChunks, Path checkpointFile,
+                       AtomicInteger updated, List<Future<?>> futures) {
+        if(doneChunks.contains(chunkNo)){
+            return 1;
+        }
+        futures.add(executor.submit(() -> {
+            updated.addAndGet(deliveryService.completeDeliveries(chunk));
+            writeCheckpoint(checkpointFile, chunkNo);
+        }));
+        return 0;
+    }
+
+    private void awaitAll(List<Future<?>> futures) throws IOException {
+        for(Future<?> future : futures){
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("배송완료 배치가 중단되었습니다.", e);
+            } catch (ExecutionException e) {
+                //남은 chunk 는 체크포인트 기준으로 다음 실행때 이어서 처리
+                throw new IOException("배송완료 chunk 처리 실패", e.getCause());
+            }
+        }
+    }
+
+    private Long parseDeliveryId(String line) {
+        String first = line.split(",", 2)[0].trim();
+        if(first.isEmpty() || !Character.isDigit(first.charAt(0))){
+            return null; //빈 줄, 헤더
+        }
+        return Long.valueOf(first);
+    }
+
+    private Set<Integer> readCheckpoint(Path checkpointFile) throws IOException {
+        if(!Files.exists(checkpointFile)){
+            return Collections.emptySet();
+        }
+        try (Stream<String> lines = Files.lines(checkpointFile)) {
+            return lines.filter(l -> !l.isBlank())
+                    .map(Integer::valueOf)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private synchronized void writeCheckpoint(Path checkpointFile, int chunkNo) {
+        try {
+            Files.write(checkpointFile, (chunkNo + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,26 @@
+package jpabook.jpashop.job;
+
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@ToString
+public class DeliveryJobReport {
+    private final String file;
+    private final long deliveryIds;
+    private final int chunks;
+    private final int skippedChunks;
+    private final int completed;
+    private final long elapsedMillis;
+    private final long idsPerSecond;
+
+    public DeliveryJobReport(String file, long deliveryIds, int chunks, int skippedChunks, int completed, long elapsedMillis) {
+        this.file = file;
+        this.deliveryIds = deliveryIds;
+        this.chunks = chunks;
+        this.skippedChunks = skippedChunks;
+        this.completed = completed;
+        this.elapsedMillis = elapsedMillis;
+        this.idsPerSecond = elapsedMillis == 0 ? deliveryIds : deliveryIds * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,49 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.OrderArchiveService;
+import jpabook.jpashop.service.OrderArchiveService.HotTableStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * 오래된 주문 보관 배치
+ *
+ * horizon-days 이전에 취소 또는 배송완료된 주문을 batch-size 단위로 보관 테이블로 옮긴다.
+ * 실행 전후 운영 테이블 크기와 스캔 시간을 로그로 남긴다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jpashop.archive", name = "horizon-days")
+public class OrderArchiveJob {
+    private final OrderArchiveService orderArchiveService;
+    private final int horizonDays;
+    private final int batchSize;
+
+    public OrderArchiveJob(OrderArchiveService orderArchiveService,
+                           @Value("${jpashop.archive.horizon-days}") int horizonDays,
+                           @Value("${jpashop.archive.batch-size:500}") int batchSize) {
+        this.orderArchiveService = orderArchiveService;
+        this.horizonDays = horizonDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${jpashop.archive.cron:0 0 4 * * *}")
+    public void run(){
+        LocalDateTime horizon = LocalDateTime.now().minusDays(horizonDays);
+        HotTableStats before = orderArchiveService.hotTableStats();
+
+        long archived = 0;
+        int moved;
+        while ((moved = orderArchiveService.archiveBatch(horizon, batchSize)) > 0) {
+            archived += moved;
+        }
+
+        HotTableStats after = orderArchiveService.hotTableStats();
+        log.info("order archive horizon={} archived={} before={} after={}", horizon, archived, before, after);
+    }
+}
@@ -0,0 +1,29 @@
+package jpabook.jpashop.job;
+
+import jpabook.jpashop.service.StockService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 분할 재고 재분배
+ * 주문 중 분할 row 넘어가기가 일어난 상품을 모아서 상품별 트랜잭션 하나로 고르게 다시 나눈다.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StockRebalanceJob {
+    private final StockService stockService;
+
+    @Scheduled(fixedDelayString = "${jpashop.stock.rebalance-interval:1000}")
+    public void run(){
+        for(Long itemId : stockService.drainLowItems()){
+            try {
+                stockService.rebalance(itemId);
+            } catch (RuntimeException e) {
+                log.warn("stock rebalance failed itemId={}", itemId, e);
+            }
+        }
+    }
+}
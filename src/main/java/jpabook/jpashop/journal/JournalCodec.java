@@ -0,0 +1,164 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.event.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * 저널 레코드 인코딩
+ *
+ * [int length][int crc32][byte type][payload]
+ * length 는 type + payload 길이. length 가 0 이거나 crc 가 맞지 않으면 그 위치를 로그의 끝으로 본다.
+ */
+final class JournalCodec {
+    static final int HEADER_SIZE = 8;
+
+    private static final byte ORDER_PLACED = 1;
+    private static final byte ORDER_CANCELLED = 2;
+    private static final byte STOCK_CHANGED = 3;
+    private static final byte MEMBER_RENAMED = 4;
+    private static final byte ITEM_SNAPSHOT = 5;
+    private static final byte MEMBER_SNAPSHOT = 6;
+
+    private JournalCodec() {
+    }
+
+    /**
+     * 헤더를 포함한 레코드 전체
+     */
+    static ByteBuffer frame(Object event) {
+        ByteBuffer body = encode(event);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + body.remaining());
+        record.putInt(body.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        record.flip();
+        return record;
+    }
+
+    /**
+     * buffer 의 position 부터 레코드를 읽는다.
+     * @return 마지막으로 정상적으로 읽은 레코드의 끝 위치
+     */
+    static int readAll(ByteBuffer buffer, Consumer<Object> consumer) {
+        int position = buffer.position();
+        while (buffer.limit() - position >= HEADER_SIZE) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > buffer.limit()) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.position(position + HEADER_SIZE).limit(position + HEADER_SIZE + length);
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break; //기록 도중 종료된 레코드
+            }
+            consumer.accept(decode(body));
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static ByteBuffer encode(Object event) {
+        if (event instanceof OrderPlacedEvent) {
+            OrderPlacedEvent e = (OrderPlacedEvent) event;
+            return encodeOrder(ORDER_PLACED, e.getOrderId(), e.getMemberId(), e.getOrderDate(), e.getLines());
+        }
+        if (event instanceof OrderCancelledEvent) {
+            OrderCancelledEvent e = (OrderCancelledEvent) event;
+            return encodeOrder(ORDER_CANCELLED, e.getOrderId(), e.getMemberId(), e.getOrderDate(), e.getLines());
+        }
+        if (event instanceof StockChangedEvent) {
+            StockChangedEvent e = (StockChangedEvent) event;
+            return ByteBuffer.allocate(1 + 8 + 4 + 1)
+                    .put(STOCK_CHANGED).putLong(e.getItemId()).putInt(e.getDelta()).put((byte) e.getCause().ordinal())
+                    .flip();
+        }
+        if (event instanceof MemberRenamedEvent) {
+            MemberRenamedEvent e = (MemberRenamedEvent) event;
+            byte[] name = bytes(e.getName());
+            return ByteBuffer.allocate(1 + 8 + 4 + name.length)
+                    .put(MEMBER_RENAMED).putLong(e.getMemberId()).putInt(name.length).put(name)
+                    .flip();
+        }
+        if (event instanceof JournalProjection.ItemSnapshot) {
+            JournalProjection.ItemSnapshot e = (JournalProjection.ItemSnapshot) event;
+            return ByteBuffer.allocate(1 + 8 + 8 + 8)
+                    .put(ITEM_SNAPSHOT).putLong(e.getItemId()).putLong(e.getStock()).putLong(e.getUnitsSold())
+                    .flip();
+        }
+        if (event instanceof JournalProjection.MemberSnapshot) {
+            JournalProjection.MemberSnapshot e = (JournalProjection.MemberSnapshot) event;
+            byte[] name = bytes(e.getName());
+            return ByteBuffer.allocate(1 + 8 + 8 + 4 + name.length)
+                    .put(MEMBER_SNAPSHOT).putLong(e.getMemberId()).putLong(e.getOrderCount()).putInt(name.length).put(name)
+                    .flip();
+        }
+        throw new IllegalArgumentException("저널에 기록할 수 없는 이벤트: " + event);
+    }
+
+    private static ByteBuffer encodeOrder(byte type, Long orderId, Long memberId, LocalDateTime orderDate, List<OrderLine> lines) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 8 + 8 + 8 + 4 + lines.size() * (8 + 4 + 4));
+        buffer.put(type).putLong(orderId).putLong(memberId)
+                .putLong(orderDate.toInstant(ZoneOffset.UTC).toEpochMilli())
+                .putInt(lines.size());
+        for (OrderLine line : lines) {
+            buffer.putLong(line.getItemId()).putInt(line.getOrderPrice()).putInt(line.getCount());
+        }
+        return buffer.flip();
+    }
+
+    private static Object decode(ByteBuffer body) {
+        byte type = body.get();
+        switch (type) {
+            case ORDER_PLACED:
+            case ORDER_CANCELLED: {
+                long orderId = body.getLong();
+                long memberId = body.getLong();
+                LocalDateTime orderDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(body.getLong()), ZoneOffset.UTC);
+                int size = body.getInt();
+                List<OrderLine> lines = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    lines.add(new OrderLine(body.getLong(), body.getInt(), body.getInt()));
+                }
+                return type == ORDER_PLACED
+                        ? new OrderPlacedEvent(orderId, memberId, orderDate, lines)
+                        : new OrderCancelledEvent(orderId, memberId, orderDate, lines);
+            }
+            case STOCK_CHANGED:
+                return new StockChangedEvent(body.getLong(), body.getInt(), StockChangedEvent.Cause.values()[body.get()]);
+            case MEMBER_RENAMED:
+                return new MemberRenamedEvent(body.getLong(), string(body));
+            case ITEM_SNAPSHOT:
+                return new JournalProjection.ItemSnapshot(body.getLong(), body.getLong(), body.getLong());
+            case MEMBER_SNAPSHOT: {
+                long memberId = body.getLong();
+                long orderCount = body.getLong();
+                return new JournalProjection.MemberSnapshot(memberId, orderCount, string(body));
+            }
+            default:
+                throw new IllegalStateException("알 수 없는 저널 레코드 타입: " + type);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,119 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.event.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 저널을 순서대로 적용해서 만드는 메모리 읽기 모델
+ * 상품별 재고, 판매수량과 회원별 이름, 주문수
+ *
+ * 재고는 StockChangedEvent 만으로 바꾼다. 주문, 취소, 분할 재고, 예약의 차감/복구도 StockService 가
+ * 재고변경 이벤트로 발행하므로 주문 이벤트에서 또 빼면 두번 반영된다.
+ *
+ * 쓰기는 저널 append 스레드 하나에서만 일어나고 읽기는 어디서든 가능하다.
+ */
+public class JournalProjection {
+    private final Map<Long, ItemView> items = new ConcurrentHashMap<>();
+    private final Map<Long, MemberView> members = new ConcurrentHashMap<>();
+
+    void apply(Object event) {
+        if (event instanceof OrderPlacedEvent) {
+            OrderPlacedEvent e = (OrderPlacedEvent) event;
+            for (OrderLine line : e.getLines()) {
+                item(line.getItemId()).unitsSold += line.getCount();
+            }
+            member(e.getMemberId()).orderCount++;
+        } else if (event instanceof OrderCancelledEvent) {
+            OrderCancelledEvent e = (OrderCancelledEvent) event;
+            for (OrderLine line : e.getLines()) {
+                item(line.getItemId()).unitsSold -= line.getCount();
+            }
+            member(e.getMemberId()).orderCount--;
+        } else if (event instanceof StockChangedEvent) {
+            StockChangedEvent e = (StockChangedEvent) event;
+            item(e.getItemId()).stock += e.getDelta();
+        } else if (event instanceof MemberRenamedEvent) {
+            MemberRenamedEvent e = (MemberRenamedEvent) event;
+            member(e.getMemberId()).name = e.getName();
+        } else if (event instanceof ItemSnapshot) {
+            ItemSnapshot e = (ItemSnapshot) event;
+            ItemView item = item(e.getItemId());
+            item.stock = e.getStock();
+            item.unitsSold = e.getUnitsSold();
+        } else if (event instanceof MemberSnapshot) {
+            MemberSnapshot e = (MemberSnapshot) event;
+            MemberView member = member(e.getMemberId());
+            member.name = e.getName();
+            member.orderCount = e.getOrderCount();
+        }
+    }
+
+    /**
+     * 압축시 기록할 현재 상태
+     * 스냅샷 레코드는 증감이 아니라 값을 덮어쓰므로 이전 세그먼트 다음에 다시 적용되어도 결과가 같다.
+     */
+    List<Object> snapshotRecords() {
+        List<Object> records = new ArrayList<>(items.size() + members.size());
+        items.forEach((id, item) -> records.add(new ItemSnapshot(id, item.stock, item.unitsSold)));
+        members.forEach((id, member) -> records.add(new MemberSnapshot(id, member.orderCount, member.name)));
+        return records;
+    }
+
+    public ItemView findItem(Long itemId) {
+        return items.get(itemId);
+    }
+
+    public MemberView findMember(Long memberId) {
+        return members.get(memberId);
+    }
+
+    public int itemCount() {
+        return items.size();
+    }
+
+    public int memberCount() {
+        return members.size();
+    }
+
+    private ItemView item(Long itemId) {
+        return items.computeIfAbsent(itemId, id -> new ItemView());
+    }
+
+    private MemberView member(Long memberId) {
+        return members.computeIfAbsent(memberId, id -> new MemberView());
+    }
+
+    @Getter
+    public static class ItemView {
+        private volatile long stock;
+        private volatile long unitsSold;
+    }
+
+    @Getter
+    public static class MemberView {
+        private volatile String name;
+        private volatile long orderCount;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class ItemSnapshot {
+        private final long itemId;
+        private final long stock;
+        private final long unitsSold;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class MemberSnapshot {
+        private final long memberId;
+        private final long orderCount;
+        private final String name;
+    }
+}
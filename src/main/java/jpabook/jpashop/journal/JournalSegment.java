@@ -0,0 +1,82 @@
+package jpabook.jpashop.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 메모리 매핑된 저널 세그먼트 파일 하나
+ */
+final class JournalSegment {
+    private final int index;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int position;
+
+    private JournalSegment(int index, FileChannel channel, MappedByteBuffer buffer, int position) {
+        this.index = index;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    /**
+     * 쓰기용으로 연다. 기존 파일이면 마지막 정상 레코드 뒤부터 이어서 쓴다.
+     */
+    static JournalSegment openForAppend(Path path, int index, int segmentSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE);
+        long size = Math.max(channel.size(), segmentSize);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        int end = JournalCodec.readAll(buffer.duplicate(), event -> { });
+        return new JournalSegment(index, channel, buffer, end);
+    }
+
+    /**
+     * 세그먼트 파일 전체를 순서대로 읽는다.
+     */
+    static void replay(Path path, JournalProjection projection) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            JournalCodec.readAll(buffer, projection::apply);
+        }
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    boolean hasRoom(int recordSize) {
+        //다음 레코드 헤더 자리(length 0)까지 남겨둔다
+        return position + recordSize + JournalCodec.HEADER_SIZE <= buffer.capacity();
+    }
+
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 본문을 먼저 쓰고 length 를 마지막에 써서 중간에 종료되어도 반쯤 쓴 레코드가 보이지 않게 한다.
+     */
+    void append(ByteBuffer record) {
+        int start = position;
+        int length = record.getInt(0);
+        ByteBuffer target = buffer.duplicate();
+        target.position(start + 4);
+        target.put(record.duplicate().position(4));
+        buffer.putInt(start, length);
+        position = start + record.remaining();
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class JournalStats {
+    private final int segments;
+    private final int activeSegment;
+    private final long appendedSinceStart;
+    private final long rebuildMillis;
+}
@@ -0,0 +1,215 @@
+package jpabook.jpashop.journal;
+
+import jpabook.jpashop.event.MemberRenamedEvent;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.event.StockChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * 주문 이벤트 저널
+ *
+ * 커밋된 주문, 취소, 재고변경, 회원이름변경 이벤트를 메모리 매핑된 세그먼트 파일에 순서대로 추가한다.
+ * fsync 는 fsync-interval-ms 마다 한번에 모아서 한다. (그 사이에 OS 가 죽으면 마지막 구간은 유실될 수 있다)
+ * 기동시 SQL 대신 세그먼트를 순서대로 읽어 JournalProjection 을 다시 만든다.
+ *
+ * 세그먼트가 가득 차면 다음 번호의 세그먼트로 넘어가고,
+ * 닫힌 세그먼트가 compaction-threshold 개 이상이면 스냅샷 하나로 합친다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jpashop.journal", name = "dir")
+public class OrderJournal {
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentSize;
+    private final long fsyncIntervalMs;
+    private final int compactionThreshold;
+
+    private final JournalProjection projection = new JournalProjection();
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private JournalSegment active;
+    private boolean dirty;
+    private long appended;
+    private long rebuildMillis;
+
+    public OrderJournal(@Value("${jpashop.journal.dir}") String dir,
+                        @Value("${jpashop.journal.segment-size:67108864}") int segmentSize,
+                        @Value("${jpashop.journal.fsync-interval-ms:5}") long fsyncIntervalMs,
+                        @Value("${jpashop.journal.compaction-threshold:8}") int compactionThreshold) {
+        this.dir = Paths.get(dir);
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(dir);
+        long begin = System.nanoTime();
+        List<Path> segments = listSegments();
+        for (Path segment : segments) {
+            JournalSegment.replay(segment, projection);
+        }
+        rebuildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        int lastIndex = segments.isEmpty() ? 0 : indexOf(segments.get(segments.size() - 1));
+        active = JournalSegment.openForAppend(segmentPath(lastIndex), lastIndex, segmentSize);
+        background.scheduleWithFixedDelay(this::flush, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("order journal rebuilt {} segments in {}ms (items={}, members={})",
+                segments.size(), rebuildMillis, projection.itemCount(), projection.memberCount());
+    }
+
+    @TransactionalEventListener(classes = {OrderPlacedEvent.class, OrderCancelledEvent.class,
+            StockChangedEvent.class, MemberRenamedEvent.class})
+    public void onEvent(Object event) {
+        append(event);
+    }
+
+    public synchronized void append(Object event) {
+        ByteBuffer record = JournalCodec.frame(event);
+        if (!active.hasRoom(record.remaining())) {
+            if (record.remaining() + JournalCodec.HEADER_SIZE > active.capacity()) {
+                throw new IllegalArgumentException("세그먼트보다 큰 레코드: " + record.remaining());
+            }
+            roll();
+        }
+        active.append(record);
+        dirty = true;
+        appended++;
+        projection.apply(event);
+    }
+
+    public JournalProjection getProjection() {
+        return projection;
+    }
+
+    public synchronized JournalStats stats() throws IOException {
+        return new JournalStats(listSegments().size(), active.getIndex(), appended, rebuildMillis);
+    }
+
+    /**
+     * 그룹 fsync
+     * append 는 락을 잡고 메모리에만 쓰고, 디스크 동기화는 여기서 모아서 한다.
+     */
+    private void flush() {
+        JournalSegment segment;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            segment = active;
+        }
+        segment.force();
+    }
+
+    private void roll() {
+        try {
+            active.close();
+            int next = active.getIndex() + 1;
+            active = JournalSegment.openForAppend(segmentPath(next), next, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        background.execute(this::compactIfNeeded);
+    }
+
+    /**
+     * 닫힌 세그먼트들을 스냅샷 레코드만 담은 세그먼트 하나로 합친다.
+     * 닫힌 세그먼트는 더 이상 바뀌지 않으므로 append 를 막지 않고 진행한다.
+     * 스냅샷은 마지막 닫힌 세그먼트 번호로 교체하고 나머지는 지운다.
+     */
+    void compactIfNeeded() {
+        try {
+            int activeIndex;
+            synchronized (this) {
+                activeIndex = active.getIndex();
+            }
+            List<Path> sealed = listSegments().stream()
+                    .filter(p -> indexOf(p) < activeIndex)
+                    .collect(Collectors.toList());
+            if (sealed.size() < compactionThreshold) {
+                return;
+            }
+            JournalProjection snapshot = new JournalProjection();
+            for (Path segment : sealed) {
+                JournalSegment.replay(segment, snapshot);
+            }
+
+            Path target = sealed.get(sealed.size() - 1);
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                for (Object record : snapshot.snapshotRecords()) {
+                    ByteBuffer frame = JournalCodec.frame(record);
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            for (Path segment : sealed.subList(0, sealed.size() - 1)) {
+                Files.delete(segment);
+            }
+            log.info("order journal compacted {} segments into {}", sealed.size(), target.getFileName());
+        } catch (IOException e) {
+            log.warn("order journal compaction failed", e);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("%010d%s", index, SEGMENT_SUFFIX));
+    }
+
+    private int indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        background.shutdown();
+        synchronized (this) {
+            active.close();
+        }
+    }
+}
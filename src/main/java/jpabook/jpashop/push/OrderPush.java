@@ -0,0 +1,25 @@
+package jpabook.jpashop.push;
+
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.domain.OrderChangeType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * 구독자에게 보내는 주문 상태 변경 (SSE event 의 id 는 seq)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderPush {
+    private final long seq;
+    private final Long orderId;
+    private final Long memberId;
+    private final OrderChangeType type;
+    private final LocalDateTime changedAt;
+
+    public static OrderPush of(OrderChange change){
+        return new OrderPush(change.getSeq(), change.getOrderId(), change.getMemberId(), change.getType(), change.getChangedAt());
+    }
+}
@@ -0,0 +1,337 @@
+package jpabook.jpashop.push;
+
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.domain.OrderChangeType;
+import jpabook.jpashop.service.ChangeFeedService;
+import jpabook.jpashop.service.ChangeFeedService.ChangeBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 주문 상태 변경 SSE 방송
+ *
+ * 주문 변경 피드(order_change)를 poll-interval 마다 한 스레드가 따라 읽고, 회원 / 변경 종류별 구독자 queue 에 나눠 담는다.
+ * 연결은 비동기 요청(SseEmitter)으로 열어두기만 하므로 대기 중인 연결은 스레드를 쓰지 않는다.
+ * 실제 전송은 threads 개의 전송 스레드가 메시지가 쌓인 구독자만 골라서 한다.
+ * 구독자 queue(buffer-size)가 가득 차면 그 연결을 끊는다. 클라이언트는 Last-Event-ID 로 다시 붙으면 놓친 변경부터 받는다.
+ * (피드는 빠진 seq 를 건너뛰지 않고 커밋 순서대로 읽히므로 다시 받는 변경에 빠짐이 없다)
+ * 놓친 변경은 요청 스레드가 아니라 전송 스레드에서 짧은 읽기 트랜잭션으로 읽는다. 요청 스레드가 DB 를 쓰지 않으므로
+ * OSIV 가 켜져 있어도 연결이 열려 있는 동안 커넥션을 잡지 않는다.
+ * 일괄 취소, 배송완료 배치도 피드에 기록되므로 따로 이벤트를 발행하지 않아도 된다.
+ * 피드 조회, heartbeat 는 전용 스레드(order-push-poll)에서 돈다. 스프링 기본 스케줄러는 스레드가 하나라서
+ * 배치 작업(배송완료, 보관 등)이 오래 걸리면 그동안 방송이 멈추기 때문이다.
+ */
+@Slf4j
+@Component
+public class OrderPushBroadcaster {
+    private static final Object HEARTBEAT = new Object();
+    private static final int POLL_BATCH = 500;
+    private static final int SEND_BATCH = 64;
+    private static final long REPLAY_LIMIT = 10_000;
+
+    private final ChangeFeedService changeFeedService;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMs;
+    private final long pollIntervalMs;
+    private final long heartbeatIntervalMs;
+    private final ThreadPoolExecutor sender;
+    private final ScheduledExecutorService poller = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "order-push-poll");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, PushSubscriber> subscribers = new ConcurrentHashMap<>();
+    private final Map<Long, Set<PushSubscriber>> byMember = new ConcurrentHashMap<>();
+    private final Map<OrderChangeType, Set<PushSubscriber>> byType = new EnumMap<>(OrderChangeType.class);
+    private final Set<PushSubscriber> all = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private volatile long cursor = -1;
+
+    public OrderPushBroadcaster(ChangeFeedService changeFeedService,
+                                @Value("${jpashop.push.buffer-size:64}") int bufferSize,
+                                @Value("${jpashop.push.max-subscribers:20000}") int maxSubscribers,
+                                @Value("${jpashop.push.timeout-ms:1800000}") long timeoutMs,
+                                @Value("${jpashop.push.threads:2}") int threads,
+                                @Value("${jpashop.push.poll-interval:200}") long pollIntervalMs,
+                                @Value("${jpashop.push.heartbeat-interval:15000}") long heartbeatIntervalMs) {
+        this.changeFeedService = changeFeedService;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMs = timeoutMs;
+        this.pollIntervalMs = pollIntervalMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        //구독자당 전송 작업은 최대 1개라서 대기열은 구독자 수를 넘지 않는다.
+        this.sender = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "order-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for(OrderChangeType type : OrderChangeType.values()){
+            byType.put(type, ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * 기동 전 변경은 보내지 않는다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start(){
+        cursor = changeFeedService.latestCursor();
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        poller.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("order push started cursor={}", cursor);
+    }
+
+    //==구독==//
+    /**
+     * @param memberId null 이면 모든 회원
+     * @param type null 이면 모든 변경
+     * @param lastEventId 다시 연결한 경우 마지막으로 받은 seq. 그 뒤 변경을 다시 보낸다. (buffer-size 보다 많으면 끊는다)
+     */
+    public synchronized SseEmitter subscribe(Long memberId, OrderChangeType type, Long lastEventId){
+        if(subscribers.size() >= maxSubscribers){
+            throw new PushLimitExceededException("구독자가 너무 많습니다. 잠시 후 다시 연결하세요.");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        PushSubscriber subscriber = new PushSubscriber(UUID.randomUUID().toString(), emitter, memberId, type, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(e -> remove(subscriber));
+
+        subscribers.put(subscriber.getId(), subscriber);
+        if(lastEventId == null || cursor < 0){
+            register(subscriber);
+        } else if(cursor - lastEventId > REPLAY_LIMIT){
+            //너무 오래 끊겨 있었으면 다시 읽지 않는다. (변경 피드 API 로 따라온 뒤 다시 구독한다)
+            evict(subscriber);
+        } else {
+            //방송 대상에는 놓친 변경을 다 넣은 뒤에 등록한다. (SseEmitter 는 핸들러 반환 전 전송을 모아 두었다 보낸다)
+            sender.execute(() -> replay(subscriber, lastEventId));
+        }
+        return emitter;
+    }
+
+    private void register(PushSubscriber subscriber){
+        Long memberId = subscriber.getMemberId();
+        OrderChangeType type = subscriber.getType();
+        if(memberId != null){
+            byMember.compute(memberId, (k, set) -> {
+                Set<PushSubscriber> members = set == null ? ConcurrentHashMap.newKeySet() : set;
+                members.add(subscriber);
+                return members;
+            });
+        } else if(type != null){
+            byType.get(type).add(subscriber);
+        } else {
+            all.add(subscriber);
+        }
+    }
+
+    /**
+     * 전송 스레드에서 실행한다. 대부분은 lock 없이 읽고, 그 사이 방송된 나머지만 poll 과 같은 lock 안에서 읽은 뒤
+     * 방송 대상에 등록하므로 중복, 누락이 없다.
+     */
+    private void replay(PushSubscriber subscriber, long lastEventId){
+        try {
+            List<OrderPush> missed = new ArrayList<>();
+            long from = readMissed(subscriber, lastEventId, cursor, missed);
+            synchronized (this){
+                if(subscriber.isClosed()){
+                    return;
+                }
+                readMissed(subscriber, from, cursor, missed);
+                //buffer 보다 많이 밀렸으면 일부만 보내지 않고 끊는다.
+                if(missed.size() > bufferSize){
+                    evict(subscriber);
+                    return;
+                }
+                register(subscriber);
+                missed.forEach(push -> enqueue(subscriber, push));
+            }
+        } catch (RuntimeException e) {
+            log.warn("order push replay failed id={}", subscriber.getId(), e);
+            evict(subscriber);
+        }
+    }
+
+    /**
+     * (from, upTo] 중 구독자가 받을 변경을 missed 에 담는다. buffer-size 를 넘으면 멈춘다.
+     * @return 다음에 읽을 cursor
+     */
+    private long readMissed(PushSubscriber subscriber, long from, long upTo, List<OrderPush> missed){
+        while(from < upTo && missed.size() <= bufferSize){
+            List<OrderChange> changes = changeFeedService.findChanges(from, POLL_BATCH).getChanges();
+            if(changes.isEmpty()){
+                break;
+            }
+            for(OrderChange change : changes){
+                if(change.getSeq() > upTo){
+                    return upTo;
+                }
+                OrderPush push = OrderPush.of(change);
+                if(subscriber.matches(push)){
+                    missed.add(push);
+                }
+                from = change.getSeq();
+            }
+        }
+        return from;
+    }
+
+    //==방송==//
+    private void pollQuietly(){
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            //예외가 나가면 다음 실행이 취소된다.
+            log.warn("order push poll failed cursor={}", cursor, e);
+        }
+    }
+
+    public synchronized void poll(){
+        if(cursor < 0){
+            return;
+        }
+        ChangeBatch batch;
+        do {
+            batch = changeFeedService.findChanges(cursor, POLL_BATCH);
+            for(OrderChange change : batch.getChanges()){
+                publish(OrderPush.of(change));
+            }
+            cursor = batch.getNextCursor();
+        } while(batch.isHasMore() && !batch.getChanges().isEmpty());
+    }
+
+    private void publish(OrderPush push){
+        for(PushSubscriber subscriber : all){
+            deliver(subscriber, push);
+        }
+        for(PushSubscriber subscriber : byType.get(push.getType())){
+            deliver(subscriber, push);
+        }
+        Set<PushSubscriber> members = byMember.get(push.getMemberId());
+        if(members != null){
+            for(PushSubscriber subscriber : members){
+                deliver(subscriber, push);
+            }
+        }
+    }
+
+    private void deliver(PushSubscriber subscriber, OrderPush push){
+        if(subscriber.matches(push)){
+            enqueue(subscriber, push);
+        }
+    }
+
+    /**
+     * 끊어진 연결을 찾아내기 위한 주석 이벤트
+     */
+    public void heartbeat(){
+        for(PushSubscriber subscriber : subscribers.values()){
+            enqueue(subscriber, HEARTBEAT);
+        }
+    }
+
+    private void enqueue(PushSubscriber subscriber, Object message){
+        if(subscriber.isClosed()){
+            return;
+        }
+        if(!subscriber.offer(message)){
+            evict(subscriber);
+            return;
+        }
+        if(subscriber.getScheduled().compareAndSet(false, true)){
+            sender.execute(() -> send(subscriber));
+        }
+    }
+
+    private void send(PushSubscriber subscriber){
+        try {
+            Object message;
+            int count = 0;
+            while(count++ < SEND_BATCH && (message = subscriber.poll()) != null){
+                if(message == HEARTBEAT){
+                    subscriber.getEmitter().send(SseEmitter.event().comment("ping"));
+                } else {
+                    OrderPush push = (OrderPush) message;
+                    subscriber.getEmitter().send(SseEmitter.event()
+                            .id(String.valueOf(push.getSeq()))
+                            .name(push.getType().name())
+                            .data(push));
+                    sent.increment();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            //연결이 끊어졌다. emitter 정리는 컨테이너 콜백(onError)이 한다.
+            remove(subscriber);
+        } finally {
+            subscriber.getScheduled().set(false);
+            //남은 메시지는 다른 구독자 차례 뒤로 다시 넣는다.
+            if(subscriber.hasPending() && subscriber.getScheduled().compareAndSet(false, true)){
+                sender.execute(() -> send(subscriber));
+            }
+        }
+    }
+
+    //==정리==//
+    private void evict(PushSubscriber subscriber){
+        if(remove(subscriber)){
+            evicted.increment();
+            log.debug("order push subscriber evicted id={} memberId={}", subscriber.getId(), subscriber.getMemberId());
+            subscriber.getEmitter().complete();
+        }
+    }
+
+    private boolean remove(PushSubscriber subscriber){
+        if(subscribers.remove(subscriber.getId()) == null){
+            return false;
+        }
+        subscriber.close();
+        if(subscriber.getMemberId() != null){
+            byMember.computeIfPresent(subscriber.getMemberId(), (k, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        } else if(subscriber.getType() != null){
+            byType.get(subscriber.getType()).remove(subscriber);
+        } else {
+            all.remove(subscriber);
+        }
+        return true;
+    }
+
+    @PreDestroy
+    public void stop(){
+        for(PushSubscriber subscriber : new ArrayList<>(subscribers.values())){
+            remove(subscriber);
+            subscriber.getEmitter().complete();
+        }
+        poller.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    public Map<String, Object> stats(){
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("members", byMember.size());
+        stats.put("cursor", cursor);
+        stats.put("sent", sent.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("sendQueue", sender.getQueue().size());
+        return stats;
+    }
+}
@@ -0,0 +1,11 @@
+package jpabook.jpashop.push;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class PushLimitExceededException extends RuntimeException {
+    public PushLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,54 @@
+package jpabook.jpashop.push;
+
+import jpabook.jpashop.domain.OrderChangeType;
+import lombok.Getter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SSE 구독자 1명
+ * 보낼 메시지는 크기가 정해진 queue 에 쌓이고, 전송 스레드가 queue 가 빌 때까지 보낸다.
+ * queue 가 가득 차면 못 따라오는 구독자로 보고 연결을 끊는다.
+ */
+@Getter
+class PushSubscriber {
+    private final String id;
+    private final SseEmitter emitter;
+    private final Long memberId;
+    private final OrderChangeType type;
+    private final ArrayBlockingQueue<Object> queue;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    PushSubscriber(String id, SseEmitter emitter, Long memberId, OrderChangeType type, int bufferSize) {
+        this.id = id;
+        this.emitter = emitter;
+        this.memberId = memberId;
+        this.type = type;
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    boolean matches(OrderPush push){
+        return (memberId == null || memberId.equals(push.getMemberId()))
+                && (type == null || type == push.getType());
+    }
+
+    boolean offer(Object message){
+        return !closed && queue.offer(message);
+    }
+
+    Object poll(){
+        return queue.poll();
+    }
+
+    boolean hasPending(){
+        return !closed && !queue.isEmpty();
+    }
+
+    void close(){
+        closed = true;
+        queue.clear();
+    }
+}
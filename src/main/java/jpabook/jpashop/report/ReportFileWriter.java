@@ -0,0 +1,104 @@
+package jpabook.jpashop.report;
+
+import jpabook.jpashop.repository.order.query.OrderReportRowDto;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 리포트 CSV 를 FileChannel 로 기록한다.
+ * 행은 고정 크기 버퍼에 모았다가 가득 차면 채널로 내보내므로 리포트 크기와 관계없이 힙 사용량이 일정하다.
+ * GZIP 이면 파일 채널 앞에 압축 스트림을 끼운다.
+ */
+class ReportFileWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String HEADER = "order_id,order_date,member_name,status,item_name,order_price,count,line_total,order_total\n";
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final StringBuilder line = new StringBuilder(256);
+
+    ReportFileWriter(Path file, ReportFormat format) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.channel = format == ReportFormat.GZIP
+                ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE))
+                : fileChannel;
+        write(HEADER);
+    }
+
+    /**
+     * 한 주문의 주문상품 행들 (주문 합계를 각 행에 함께 기록)
+     */
+    void writeOrder(List<OrderReportRowDto> rows) throws IOException {
+        long orderTotal = 0;
+        for (OrderReportRowDto row : rows) {
+            orderTotal += (long) row.getOrderPrice() * row.getCount();
+        }
+        for (OrderReportRowDto row : rows) {
+            line.setLength(0);
+            line.append(row.getOrderId()).append(',')
+                    .append(row.getOrderDate()).append(',');
+            appendText(row.getMemberName());
+            line.append(',').append(row.getStatus()).append(',');
+            appendText(row.getItemName());
+            line.append(',').append(row.getOrderPrice())
+                    .append(',').append(row.getCount())
+                    .append(',').append((long) row.getOrderPrice() * row.getCount())
+                    .append(',').append(orderTotal)
+                    .append('\n');
+            write(line);
+        }
+    }
+
+    private void appendText(String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private void write(CharSequence text) throws IOException {
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer large = ByteBuffer.wrap(bytes);
+            while (large.hasRemaining()) {
+                channel.write(large);
+            }
+            return;
+        }
+        buffer.put(bytes);
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
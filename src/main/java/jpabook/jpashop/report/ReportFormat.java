@@ -0,0 +1,17 @@
+package jpabook.jpashop.report;
+
+import lombok.Getter;
+
+@Getter
+public enum ReportFormat {
+    CSV("text/csv", ".csv"),
+    GZIP("application/gzip", ".csv.gz");
+
+    private final String contentType;
+    private final String extension;
+
+    ReportFormat(String contentType, String extension) {
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+}
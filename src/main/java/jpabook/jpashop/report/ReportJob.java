@@ -0,0 +1,73 @@
+package jpabook.jpashop.report;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * 리포트 작업 상태
+ * 작업 스레드가 갱신하고 API 스레드가 읽는다.
+ */
+@Getter
+public class ReportJob {
+    private final String id;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final ReportFormat format;
+    private final Path file;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile ReportStatus status = ReportStatus.QUEUED;
+    private volatile long totalOrders;
+    private volatile long ordersWritten;
+    private volatile long rowsWritten;
+    private volatile long bytes;
+    private volatile String error;
+    private volatile LocalDateTime finishedAt;
+
+    ReportJob(String id, LocalDateTime from, LocalDateTime to, ReportFormat format, Path file) {
+        this.id = id;
+        this.from = from;
+        this.to = to;
+        this.format = format;
+        this.file = file;
+    }
+
+    /**
+     * 진행률 (0 ~ 100)
+     */
+    public int getProgress() {
+        if (status == ReportStatus.DONE) {
+            return 100;
+        }
+        return totalOrders == 0 ? 0 : (int) Math.min(99, ordersWritten * 100 / totalOrders);
+    }
+
+    public boolean isDone() {
+        return status == ReportStatus.DONE;
+    }
+
+    //==작업 스레드에서만 호출==//
+    void start(long totalOrders) {
+        this.totalOrders = totalOrders;
+        this.status = ReportStatus.RUNNING;
+    }
+
+    void progress(long orders, long rows) {
+        this.ordersWritten += orders;
+        this.rowsWritten += rows;
+    }
+
+    void done(long bytes) {
+        this.bytes = bytes;
+        this.finishedAt = LocalDateTime.now();
+        this.status = ReportStatus.DONE;
+    }
+
+    void fail(String error) {
+        this.error = error;
+        this.finishedAt = LocalDateTime.now();
+        this.status = ReportStatus.FAILED;
+    }
+}
@@ -0,0 +1,11 @@
+package jpabook.jpashop.report;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ReportQueueFullException extends RuntimeException {
+    public ReportQueueFullException(String message) {
+        super(message);
+    }
+}
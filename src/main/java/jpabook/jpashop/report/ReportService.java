@@ -0,0 +1,193 @@
+package jpabook.jpashop.report;
+
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.query.OrderReportRowDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * 정산 리포트 비동기 작업
+ *
+ * 제출된 작업은 제한된 스레드풀에서 실행된다. 대기열이 가득 차면 바로 거절한다.
+ * 주문을 page-size 건씩 keyset 으로 읽어 파일에 이어 쓰므로 기간이 길어도 메모리는 한 페이지분만 쓴다.
+ * 페이지마다 짧은 읽기 트랜잭션을 사용해서 커넥션을 오래 잡지 않는다.
+ * 운영 주문을 다 쓴 뒤 보관 주문을 쓰므로, 그 사이에 보관된 주문은 두 번 읽힌다. 운영 주문에서 쓴 주문 id 를 기억해 두고 건너뛴다.
+ * 완료된 파일은 retention-minutes 가 지나면 삭제한다.
+ */
+@Slf4j
+@Service
+public class ReportService {
+    private final OrderQueryRepository orderQueryRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final Path dir;
+    private final int pageSize;
+    private final long retentionMinutes;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    public ReportService(OrderQueryRepository orderQueryRepository,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${jpashop.report.dir:${java.io.tmpdir}/jpashop-reports}") String dir,
+                         @Value("${jpashop.report.page-size:500}") int pageSize,
+                         @Value("${jpashop.report.threads:2}") int threads,
+                         @Value("${jpashop.report.queue-capacity:16}") int queueCapacity,
+                         @Value("${jpashop.report.retention-minutes:60}") long retentionMinutes) throws IOException {
+        this.orderQueryRepository = orderQueryRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.dir = Files.createDirectories(Paths.get(dir));
+        this.pageSize = pageSize;
+        this.retentionMinutes = retentionMinutes;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public ReportJob submit(LocalDateTime from, LocalDateTime to, ReportFormat format){
+        String id = UUID.randomUUID().toString();
+        ReportJob job = new ReportJob(id, from, to, format, dir.resolve(id + format.getExtension()));
+        jobs.put(id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            throw new ReportQueueFullException("리포트 작업 대기열이 가득 찼습니다. 잠시 후 다시 요청하세요.");
+        }
+        return job;
+    }
+
+    public Optional<ReportJob> findJob(String id){
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(ReportJob job){
+        long start = System.nanoTime();
+        try {
+            job.start(readOnlyTx.execute(s -> orderQueryRepository.countReportOrders(job.getFrom(), job.getTo())));
+            try (ReportFileWriter writer = new ReportFileWriter(job.getFile(), job.getFormat())) {
+                WrittenOrders written = new WrittenOrders();
+                writePages(job, writer, false, written);
+                writePages(job, writer, true, written);
+            }
+            job.done(Files.size(job.getFile()));
+            log.info("report {} done orders={} rows={} bytes={} {}ms", job.getId(), job.getOrdersWritten(), job.getRowsWritten(),
+                    job.getBytes(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.warn("report {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+            deleteQuietly(job.getFile());
+        }
+    }
+
+    /**
+     * @param archived true 면 보관 주문
+     * @param written 운영 주문에서 쓴 주문 id. 보관 주문에서는 이미 쓴 주문을 건너뛴다.
+     */
+    private void writePages(ReportJob job, ReportFileWriter writer, boolean archived, WrittenOrders written) throws IOException {
+        long lastOrderId = 0;
+        while (true) {
+            long lastId = lastOrderId;
+            List<OrderReportRowDto> rows = readOnlyTx.execute(s -> archived
+                    ? orderQueryRepository.findArchivedReportRows(job.getFrom(), job.getTo(), lastId, pageSize)
+                    : orderQueryRepository.findReportRows(job.getFrom(), job.getTo(), lastId, pageSize));
+            if (rows.isEmpty()) {
+                return;
+            }
+            int orders = 0;
+            int rowCount = 0;
+            List<OrderReportRowDto> orderRows = new ArrayList<>();
+            for (OrderReportRowDto row : rows) {
+                if (!orderRows.isEmpty() && !orderRows.get(0).getOrderId().equals(row.getOrderId())) {
+                    if (writeOrder(writer, orderRows, archived, written)) {
+                        orders++;
+                        rowCount += orderRows.size();
+                    }
+                    orderRows.clear();
+                }
+                orderRows.add(row);
+            }
+            if (writeOrder(writer, orderRows, archived, written)) {
+                orders++;
+                rowCount += orderRows.size();
+            }
+            job.progress(orders, rowCount);
+            lastOrderId = rows.get(rows.size() - 1).getOrderId();
+        }
+    }
+
+    private boolean writeOrder(ReportFileWriter writer, List<OrderReportRowDto> orderRows,
+                               boolean archived, WrittenOrders written) throws IOException {
+        long orderId = orderRows.get(0).getOrderId();
+        if (archived && written.contains(orderId)) {
+            return false;
+        }
+        writer.writeOrder(orderRows);
+        if (!archived) {
+            written.add(orderId);
+        }
+        return true;
+    }
+
+    /**
+     * 운영 주문에서 쓴 주문 id
+     * id 는 오름차순으로 들어오므로 첫 id 기준 BitSet 으로 둔다. (id 범위 100만에 약 125KB)
+     */
+    static class WrittenOrders {
+        private final BitSet ids = new BitSet();
+        private long base = -1;
+
+        void add(long orderId) {
+            if (base < 0) {
+                base = orderId;
+            }
+            ids.set(Math.toIntExact(orderId - base));
+        }
+
+        boolean contains(long orderId) {
+            return base >= 0 && orderId >= base && orderId - base <= Integer.MAX_VALUE
+                    && ids.get((int) (orderId - base));
+        }
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired(){
+        LocalDateTime expired = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> {
+            if (job.getFinishedAt() == null || job.getFinishedAt().isAfter(expired)) {
+                return false;
+            }
+            deleteQuietly(job.getFile());
+            return true;
+        });
+    }
+
+    private void deleteQuietly(Path file){
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("report file delete failed {}", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,5 @@
+package jpabook.jpashop.report;
+
+public enum ReportStatus {
+    QUEUED, RUNNING, DONE, FAILED
+}
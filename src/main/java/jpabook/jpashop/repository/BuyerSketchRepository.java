@@ -0,0 +1,56 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.BuyerSketch;
+import jpabook.jpashop.domain.SketchScope;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class BuyerSketchRepository {
+    private final EntityManager em;
+
+    public void saveValue(SketchScope scope, Long targetId, LocalDate sketchDate, byte[] registers){
+        List<BuyerSketch> found = em.createQuery(
+                "select s from BuyerSketch s" +
+                        " where s.scope = :scope" +
+                        " and s.targetId = :targetId" +
+                        " and s.sketchDate = :sketchDate", BuyerSketch.class)
+                .setParameter("scope", scope)
+                .setParameter("targetId", targetId)
+                .setParameter("sketchDate", sketchDate)
+                .getResultList();
+        if(found.isEmpty()){
+            em.persist(BuyerSketch.create(scope, targetId, sketchDate, registers));
+        }else{
+            found.get(0).setRegisters(registers);
+        }
+    }
+
+    public List<BuyerSketch> findBetween(LocalDate from, LocalDate to){
+        return em.createQuery(
+                "select s from BuyerSketch s" +
+                        " where s.sketchDate between :from and :to", BuyerSketch.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    public List<BuyerSketch> findBetween(SketchScope scope, Collection<Long> targetIds, LocalDate from, LocalDate to){
+        return em.createQuery(
+                "select s from BuyerSketch s" +
+                        " where s.scope = :scope" +
+                        " and s.targetId in :targetIds" +
+                        " and s.sketchDate between :from and :to", BuyerSketch.class)
+                .setParameter("scope", scope)
+                .setParameter("targetIds", targetIds)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashop.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 집계용 카테고리 연결 조회 (엔티티를 읽지 않고 id 만)
+ */
+@Repository
+@RequiredArgsConstructor
+public class CategoryRepository {
+    private final EntityManager em;
+
+    /**
+     * [상품 id, 카테고리 id]
+     */
+    public List<Object[]> findItemCategories(){
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery("select item_id, category_id from category_item").getResultList();
+        return rows;
+    }
+
+    /**
+     * [카테고리 id, 부모 카테고리 id (최상위는 null)]
+     */
+    public List<Object[]> findParents(){
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery("select category_id, parent_id from category").getResultList();
+        return rows;
+    }
+}
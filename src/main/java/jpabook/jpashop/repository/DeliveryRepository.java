@@ -0,0 +1,87 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.support.BulkUpdates;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class DeliveryRepository {
+    private final EntityManager em;
+
+    public Delivery findOne(Long deliveryId){
+        return em.find(Delivery.class, deliveryId);
+    }
+
+    /**
+     * 조건부 상태 변경
+     * where 절의 현재 상태가 expected 일 때만 변경되므로 동시에 여러 트랜잭션이 시도해도 하나만 성공한다.
+     * @return 변경된 row 수
+     */
+    public int updateStatus(Long deliveryId, DeliveryStatus expected, DeliveryStatus status){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Delivery d set d.status = :status" +
+                        " where d.id = :deliveryId" +
+                        " and d.status = :expected")
+                .setParameter("status", status)
+                .setParameter("deliveryId", deliveryId)
+                .setParameter("expected", expected)
+                .executeUpdate();
+        BulkUpdates.refreshLoaded(em, Delivery.class, List.of(deliveryId));
+        return updated;
+    }
+
+    /**
+     * 주문상태가 ORDER 이고 배송 준비중인 주문들의 배송을 한번에 READY -> CANCEL 로 변경
+     * @return 변경된 row 수
+     */
+    public int cancelByOrderIds(Collection<Long> orderIds){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Delivery d set d.status = :cancel" +
+                        " where d.status = :ready" +
+                        " and d.id in (select o.delivery.id from Order o" +
+                        "  where o.id in :orderIds and o.status = :order)")
+                .setParameter("cancel", DeliveryStatus.CANCEL)
+                .setParameter("ready", DeliveryStatus.READY)
+                .setParameter("orderIds", orderIds)
+                .setParameter("order", OrderStatus.ORDER)
+                .executeUpdate();
+        for(Long orderId : orderIds){
+            Order order = em.getReference(Order.class, orderId);
+            if(Hibernate.isInitialized(order)){
+                BulkUpdates.refreshIfLoaded(em, order.getDelivery());
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * READY 상태인 배송들을 한번에 COMP 로 변경
+     * 취소되었거나 이미 완료된 배송은 변경되지 않는다.
+     * @return 변경된 row 수
+     */
+    public int completeAll(Collection<Long> deliveryIds){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Delivery d set d.status = :comp" +
+                        " where d.status = :ready" +
+                        " and d.id in :deliveryIds")
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setParameter("ready", DeliveryStatus.READY)
+                .setParameter("deliveryIds", deliveryIds)
+                .executeUpdate();
+        BulkUpdates.refreshLoaded(em, Delivery.class, deliveryIds);
+        return updated;
+    }
+}
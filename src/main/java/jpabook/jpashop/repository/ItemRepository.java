@@ -1,10 +1,12 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.support.BulkUpdates;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import java.util.List;
 
 @Repository
@@ -24,7 +26,52 @@ public class ItemRepository {
         return em.find(Item.class, itemId);
     }
 
+    /**
+     * 상품 row 잠금 (select for update) 후 최신 값으로 다시 읽는다.
+     */
+    public Item findOneForUpdate(Long itemId){
+        Item item = em.find(Item.class, itemId);
+        if(item != null){
+            em.refresh(item, LockModeType.PESSIMISTIC_WRITE);
+        }
+        return item;
+    }
+
     public List<Item> findAll(){
         return em.createQuery("select i from Item i", Item.class).getResultList();
     }
+
+    /**
+     * 재고 증가를 update 문 하나로 처리
+     * 엔티티를 읽고 변경감지로 쓰는 방식과 달리 동시에 실행되어도 증가분이 유실되지 않는다.
+     */
+    public int addStock(Long itemId, int quantity){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Item i set i.stockQuantity = i.stockQuantity + :quantity" +
+                        " where i.id = :itemId")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        BulkUpdates.refreshLoaded(em, Item.class, List.of(itemId));
+        return updated;
+    }
+
+    /**
+     * 재고 차감을 조건부 update 문 하나로 처리
+     * 재고가 quantity 이상일 때만 차감하므로 동시에 실행되어도 음수가 되지 않고 동시 증가분도 덮어쓰지 않는다.
+     * @return 1 = 차감, 0 = 재고 부족
+     */
+    public int removeStock(Long itemId, int quantity){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Item i set i.stockQuantity = i.stockQuantity - :quantity" +
+                        " where i.id = :itemId" +
+                        " and i.stockQuantity >= :quantity")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        BulkUpdates.refreshLoaded(em, Item.class, List.of(itemId));
+        return updated;
+    }
 }
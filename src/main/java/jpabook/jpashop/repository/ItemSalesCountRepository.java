@@ -0,0 +1,58 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.ItemSalesCount;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class ItemSalesCountRepository {
+    private final EntityManager em;
+
+    public List<ItemSalesCount> findAll(){
+        return em.createQuery("select c from ItemSalesCount c", ItemSalesCount.class).getResultList();
+    }
+
+    public void saveValue(Long itemId, long units){
+        ItemSalesCount count = em.find(ItemSalesCount.class, itemId);
+        if(count == null){
+            em.persist(ItemSalesCount.create(itemId, units));
+        }else{
+            count.setUnits(units);
+        }
+    }
+
+    /**
+     * 주문 테이블(보관 주문 포함)의 상품별 판매수량 [상품 id, 수량]. 취소된 주문은 뺀다.
+     */
+    public List<Object[]> countFromOrders(){
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery(
+                "select item_id, sum(units) from (" +
+                        "  select oi.item_id item_id, oi.count units" +
+                        "  from order_item oi" +
+                        "  join orders o on o.order_id = oi.order_id" +
+                        "  where o.status = 'ORDER'" +
+                        "  union all" +
+                        "  select ai.item_id, ai.count" +
+                        "  from order_item_archive ai" +
+                        "  join orders_archive a on a.order_id = ai.order_id" +
+                        "  where a.status = 'ORDER'" +
+                        " ) s group by item_id")
+                .getResultList();
+        return rows;
+    }
+
+    /**
+     * [상품 id, 상품명]
+     */
+    public List<Object[]> findNames(Collection<Long> itemIds){
+        return em.createQuery("select i.id, i.name from Item i where i.id in :ids", Object[].class)
+                .setParameter("ids", itemIds)
+                .getResultList();
+    }
+}
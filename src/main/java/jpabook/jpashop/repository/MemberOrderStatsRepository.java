@@ -0,0 +1,117 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.MemberOrderStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.function.IntSupplier;
+
+/**
+ * 회원별 주문 통계
+ * 증감은 읽지 않고 update 한 번으로 한다. (동시에 주문해도 row lock 으로 직렬화된다)
+ * 통계 row 가 없는 회원(통계 도입 전 주문만 있는 회원 포함)은 회원 row 를 잠그고 주문 테이블에서 한 번 계산해서 만든다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberOrderStatsRepository {
+    private static final String STATS_FROM_ORDERS =
+            " select cast(:memberId as bigint)," +
+            " coalesce(sum(case when s.status = 'ORDER' then 1 else 0 end), 0)," +
+            " coalesce(sum(case when s.status = 'ORDER' then s.amount else 0 end), 0)," +
+            " max(s.order_date)" +
+            " from (" +
+            "  select o.status, o.order_date," +
+            "   (select coalesce(sum(oi.order_price * oi.count), 0) from order_item oi where oi.order_id = o.order_id) amount" +
+            "  from orders o where o.member_id = :memberId" +
+            "  union all" +
+            "  select a.status, a.order_date," +
+            "   (select coalesce(sum(ai.order_price * ai.count), 0) from order_item_archive ai where ai.order_id = a.order_id)" +
+            "  from orders_archive a where a.member_id = :memberId" +
+            " ) s";
+
+    private final EntityManager em;
+
+    public MemberOrderStats findOne(Long memberId){
+        return em.find(MemberOrderStats.class, memberId);
+    }
+
+    /**
+     * 통계 row 가 아직 없는 회원은 저장하지 않고 주문 테이블에서 계산한다.
+     */
+    public MemberOrderStats findOrCompute(Long memberId){
+        MemberOrderStats stats = findOne(memberId);
+        if(stats != null){
+            return stats;
+        }
+        Object[] row = (Object[]) em.createNativeQuery(STATS_FROM_ORDERS)
+                .setParameter("memberId", memberId)
+                .getSingleResult();
+        return MemberOrderStats.create(memberId, ((Number) row[1]).longValue(), ((Number) row[2]).longValue(),
+                row[3] == null ? null : ((Timestamp) row[3]).toLocalDateTime());
+    }
+
+    /**
+     * 주문 반영 (이미 flush 된 주문이면 row 를 새로 만들 때 함께 계산된다)
+     */
+    public void addOrder(Long memberId, long amount, LocalDateTime orderDate){
+        if(increment(memberId, amount, orderDate) == 0){
+            createOrApply(memberId, () -> increment(memberId, amount, orderDate));
+        }
+    }
+
+    /**
+     * 취소 반영 (주문상태를 CANCEL 로 바꾼 뒤에 호출한다)
+     */
+    public void cancelOrders(Long memberId, long orders, long amount){
+        if(decrement(memberId, orders, amount) == 0){
+            createOrApply(memberId, () -> decrement(memberId, orders, amount));
+        }
+    }
+
+    private int increment(Long memberId, long amount, LocalDateTime orderDate){
+        return em.createQuery(
+                "update MemberOrderStats s" +
+                        " set s.orderCount = s.orderCount + 1," +
+                        " s.totalSpend = s.totalSpend + :amount," +
+                        " s.lastOrderDate = case when s.lastOrderDate is null or s.lastOrderDate < :orderDate" +
+                        "  then :orderDate else s.lastOrderDate end" +
+                        " where s.memberId = :memberId")
+                .setParameter("amount", amount)
+                .setParameter("orderDate", orderDate)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    private int decrement(Long memberId, long orders, long amount){
+        return em.createQuery(
+                "update MemberOrderStats s" +
+                        " set s.orderCount = s.orderCount - :orders," +
+                        " s.totalSpend = s.totalSpend - :amount" +
+                        " where s.memberId = :memberId")
+                .setParameter("orders", orders)
+                .setParameter("amount", amount)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+
+    /**
+     * 같은 회원의 첫 반영이 동시에 들어오면 회원 row lock 으로 줄을 세운다.
+     * 먼저 만든 쪽이 커밋했으면 update 가 성공하고, 아니면 이 트랜잭션의 변경까지 포함해 주문 테이블에서 계산한다.
+     */
+    private void createOrApply(Long memberId, IntSupplier apply){
+        em.find(Member.class, memberId, LockModeType.PESSIMISTIC_WRITE);
+        if(apply.getAsInt() > 0){
+            return;
+        }
+        em.flush();
+        em.createNativeQuery("insert into member_order_stats (member_id, order_count, total_spend, last_order_date)" +
+                STATS_FROM_ORDERS)
+                .setParameter("memberId", memberId)
+                .executeUpdate();
+    }
+}
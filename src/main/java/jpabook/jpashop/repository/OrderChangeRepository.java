@@ -0,0 +1,81 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.domain.OrderChangeType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 변경 피드 기록, 조회
+ * 일괄 변경은 엔티티를 읽지 않고 insert ... select 한 번으로 기록한다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderChangeRepository {
+    private final EntityManager em;
+
+    public void save(OrderChange change){
+        em.persist(change);
+    }
+
+    public int insertCancelled(Collection<Long> orderIds){
+        return em.createNativeQuery(
+                "insert into order_change (order_id, member_id, type, changed_at)" +
+                        " select o.order_id, o.member_id, :type, current_timestamp" +
+                        " from orders o" +
+                        " where o.order_id in (:orderIds)")
+                .setParameter("type", OrderChangeType.CANCELLED.name())
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+    }
+
+    /**
+     * 배송완료 된 주문 중 아직 기록되지 않은 것만 기록한다. (배송완료는 주문당 한 번)
+     */
+    public int insertDelivered(Collection<Long> deliveryIds){
+        return em.createNativeQuery(
+                "insert into order_change (order_id, member_id, type, changed_at)" +
+                        " select o.order_id, o.member_id, :type, current_timestamp" +
+                        " from orders o" +
+                        " join delivery d on d.delivery_id = o.delivery_id" +
+                        " where d.delivery_id in (:deliveryIds)" +
+                        " and d.status = :comp" +
+                        " and not exists (select 1 from order_change c" +
+                        "  where c.order_id = o.order_id and c.type = :type)")
+                .setParameter("type", OrderChangeType.DELIVERED.name())
+                .setParameter("deliveryIds", deliveryIds)
+                .setParameter("comp", DeliveryStatus.COMP.name())
+                .executeUpdate();
+    }
+
+    /**
+     * cursor 다음 변경 (seq 순, PK 범위 조회)
+     */
+    public List<OrderChange> findAfter(long cursor, int limit){
+        return em.createQuery(
+                "select c from OrderChange c" +
+                        " where c.seq > :cursor" +
+                        " order by c.seq", OrderChange.class)
+                .setParameter("cursor", cursor)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public long findLastSeq(){
+        Long last = em.createQuery("select max(c.seq) from OrderChange c", Long.class)
+                .getSingleResult();
+        return last == null ? 0 : last;
+    }
+
+    public int deleteBefore(LocalDateTime before){
+        return em.createQuery("delete from OrderChange c where c.changedAt < :before")
+                .setParameter("before", before)
+                .executeUpdate();
+    }
+}
@@ -1,9 +1,15 @@
 package jpabook.jpashop.repository;
 
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.fetch.FetchPlan;
+import jpabook.jpashop.repository.order.query.OrderLineQueryDto;
+import jpabook.jpashop.repository.support.BulkUpdates;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.QueryHints;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
@@ -11,8 +17,14 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+/**
+ * 목록 조회(findAll*)는 읽기 전용 힌트로 조회한다.
+ * 읽기 전용 엔티티는 dirty checking 용 스냅샷을 만들지 않고 flush 대상에서도 빠진다. (변경해도 반영되지 않는다)
+ * 수정할 주문은 findOne 으로 조회한다.
+ */
 @Repository
 @RequiredArgsConstructor
 public class OrderRepository {
@@ -27,6 +39,10 @@ public class OrderRepository {
     }
 
     public List<Order> findAll(OrderSearch orderSearch){
+        return findAll(orderSearch, FetchPlan.DEFAULT);
+    }
+
+    public List<Order> findAll(OrderSearch orderSearch, FetchPlan fetchPlan){
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaQuery<Order> cq = cb.createQuery(Order.class);
         Root<Order> o = cq.from(Order.class);
@@ -43,11 +59,17 @@ public class OrderRepository {
         }
 
         cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
-        TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000);
+        TypedQuery<Order> query = fetchPlan.forPaging().apply(em, em.createQuery(cq))
+                .setHint(QueryHints.READ_ONLY, true)
+                .setMaxResults(1000);
         return query.getResultList();
     }
 
     public List<Order> findAllByString(OrderSearch orderSearch) {
+        return findAllByString(orderSearch, FetchPlan.DEFAULT);
+    }
+
+    public List<Order> findAllByString(OrderSearch orderSearch, FetchPlan fetchPlan) {
         //language=JPAQL
         String jpql = "select o From Order o join o.member m";
         boolean isFirstCondition = true;
@@ -71,7 +93,8 @@ public class OrderRepository {
             }
             jpql += " m.name like :name";
         }
-        TypedQuery<Order> query = em.createQuery(jpql, Order.class)
+        TypedQuery<Order> query = fetchPlan.forPaging().apply(em, em.createQuery(jpql, Order.class))
+                .setHint(QueryHints.READ_ONLY, true)
                 .setMaxResults(1000); //최대 1000건
         if (orderSearch.getOrderStatus() != null) {
             query = query.setParameter("status", orderSearch.getOrderStatus());
@@ -88,6 +111,7 @@ public class OrderRepository {
                         " join fetch o.member" +
                         " join fetch o.delivery"
                         ,Order.class)
+                .setHint(QueryHints.READ_ONLY, true)
                 .getResultList();
     }
 
@@ -99,6 +123,7 @@ public class OrderRepository {
                         " join fetch o.orderItems oi" +
                         " join fetch oi.item"
                 ,Order.class)
+                .setHint(QueryHints.READ_ONLY, true)
                 .getResultList();
     }
 
@@ -108,8 +133,67 @@ public class OrderRepository {
                                 " join fetch o.member" +
                                 " join fetch o.delivery"
                         ,Order.class)
+                .setHint(QueryHints.READ_ONLY, true)
                 .setFirstResult(offset)
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    /**
+     * 조건부 상태 변경
+     * @return 변경된 row 수
+     */
+    public int updateStatus(Collection<Long> orderIds, OrderStatus expected, OrderStatus status){
+        BulkUpdates.beforeUpdate(em);
+        int updated = em.createQuery(
+                "update Order o set o.status = :status" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :expected")
+                .setParameter("status", status)
+                .setParameter("orderIds", orderIds)
+                .setParameter("expected", expected)
+                .executeUpdate();
+        BulkUpdates.refreshLoaded(em, Order.class, orderIds);
+        return updated;
+    }
+
+    /**
+     * 주어진 주문 중 주문상태, 배송상태가 일치하는 주문 id
+     */
+    public List<Long> findIdsByStatus(Collection<Long> orderIds, OrderStatus status, DeliveryStatus deliveryStatus){
+        return em.createQuery(
+                "select o.id from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds" +
+                        " and o.status = :status" +
+                        " and d.status = :deliveryStatus"
+                ,Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("status", status)
+                .setParameter("deliveryStatus", deliveryStatus)
+                .getResultList();
+    }
+
+    public long countByDeliveryStatus(Collection<Long> orderIds, DeliveryStatus deliveryStatus){
+        return em.createQuery(
+                "select count(o) from Order o" +
+                        " join o.delivery d" +
+                        " where o.id in :orderIds" +
+                        " and d.status = :deliveryStatus"
+                ,Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("deliveryStatus", deliveryStatus)
+                .getSingleResult();
+    }
+
+    public List<OrderLineQueryDto> findOrderLines(Collection<Long> orderIds){
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderLineQueryDto(o.id, o.member.id, o.orderDate, oi.item.id, oi.orderPrice, oi.count)" +
+                        " from OrderItem oi" +
+                        " join oi.order o" +
+                        " where o.id in :orderIds"
+                ,OrderLineQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
 }
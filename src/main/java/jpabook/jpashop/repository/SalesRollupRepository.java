@@ -0,0 +1,90 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.SalesRollup;
+import jpabook.jpashop.domain.SalesRollupId;
+import jpabook.jpashop.repository.support.BulkUpdates;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class SalesRollupRepository {
+    private final EntityManager em;
+
+    /**
+     * 절대값 저장 (없으면 insert, 있으면 변경감지로 update)
+     */
+    public void saveValue(Long itemId, LocalDate salesDate, long revenue, int units){
+        SalesRollupId id = new SalesRollupId(itemId, salesDate);
+        SalesRollup rollup = em.find(SalesRollup.class, id);
+        if(rollup == null){
+            em.persist(SalesRollup.create(id, revenue, units));
+        }else{
+            rollup.setRevenue(revenue);
+            rollup.setUnits(units);
+        }
+    }
+
+    /**
+     * 증감 (메모리 보관 기간이 지난 일자의 취소)
+     * 조건부 update 로 수량이 음수가 되는 증감은 반영하지 않는다.
+     * @return 0 = 집계 row 가 없거나 수량이 모자람
+     */
+    public int addDelta(Long itemId, LocalDate salesDate, long revenue, int units){
+        BulkUpdates.beforeUpdate(em);
+        return em.createQuery(
+                "update SalesRollup r set r.revenue = r.revenue + :revenue, r.units = r.units + :units" +
+                        " where r.id.itemId = :itemId and r.id.salesDate = :salesDate and r.units + :units >= 0")
+                .setParameter("revenue", revenue)
+                .setParameter("units", units)
+                .setParameter("itemId", itemId)
+                .setParameter("salesDate", salesDate)
+                .executeUpdate();
+    }
+
+    public List<SalesRollup> findBetween(LocalDate from, LocalDate to){
+        return em.createQuery(
+                "select r from SalesRollup r" +
+                        " where r.id.salesDate between :from and :to", SalesRollup.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getResultList();
+    }
+
+    /**
+     * 주문 테이블(보관 주문 포함)에서 기간의 집계를 다시 만든다.
+     * 취소된 주문은 빼고, 주문상품 행을 상품, 주문일자로 묶어 insert ... select 한 번으로 넣는다.
+     * @return 만들어진 집계 row 수
+     */
+    public int rebuild(LocalDate from, LocalDate to){
+        em.flush();
+        em.createQuery("delete from SalesRollup r where r.id.salesDate between :from and :to")
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .executeUpdate();
+        int rows = em.createNativeQuery(
+                "insert into sales_rollup (item_id, sales_date, revenue, units)" +
+                        " select item_id, sales_date, sum(revenue), sum(units) from (" +
+                        "  select oi.item_id item_id, cast(o.order_date as date) sales_date," +
+                        "   cast(oi.order_price as bigint) * oi.count revenue, oi.count units" +
+                        "  from order_item oi" +
+                        "  join orders o on o.order_id = oi.order_id" +
+                        "  where o.status = 'ORDER' and o.order_date >= :from and o.order_date < :to" +
+                        "  union all" +
+                        "  select ai.item_id, cast(a.order_date as date)," +
+                        "   cast(ai.order_price as bigint) * ai.count, ai.count" +
+                        "  from order_item_archive ai" +
+                        "  join orders_archive a on a.order_id = ai.order_id" +
+                        "  where a.status = 'ORDER' and a.order_date >= :from and a.order_date < :to" +
+                        " ) s group by item_id, sales_date")
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.plusDays(1).atStartOfDay())
+                .executeUpdate();
+        em.clear();
+        return rows;
+    }
+}
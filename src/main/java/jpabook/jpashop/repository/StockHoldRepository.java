@@ -0,0 +1,35 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.StockHold;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class StockHoldRepository {
+    private final EntityManager em;
+
+    public void save(StockHold hold){
+        em.persist(hold);
+    }
+
+    public List<StockHold> findAll(){
+        return em.createQuery("select h from StockHold h", StockHold.class).getResultList();
+    }
+
+    public int delete(String holdId){
+        return em.createQuery("delete from StockHold h where h.id = :id")
+                .setParameter("id", holdId)
+                .executeUpdate();
+    }
+
+    public int deleteAll(Collection<String> holdIds){
+        return em.createQuery("delete from StockHold h where h.id in :ids")
+                .setParameter("ids", holdIds)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,92 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.item.StockShard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 분할 재고 row 는 엔티티로 읽지 않고 update 문으로 직접 변경한다. (영속성 컨텍스트와 어긋나지 않도록)
+ */
+@Repository
+@RequiredArgsConstructor
+public class StockShardRepository {
+    private final EntityManager em;
+
+    public void save(StockShard shard){
+        em.persist(shard);
+    }
+
+    /**
+     * 재고가 충분할 때만 차감 (조건부 update)
+     * @return 1 = 차감, 0 = 재고 부족
+     */
+    public int tryTake(Long itemId, int shardNo, int count){
+        return em.createQuery(
+                "update StockShard s set s.quantity = s.quantity - :count" +
+                        " where s.itemId = :itemId" +
+                        " and s.shardNo = :shardNo" +
+                        " and s.quantity >= :count")
+                .setParameter("count", count)
+                .setParameter("itemId", itemId)
+                .setParameter("shardNo", shardNo)
+                .executeUpdate();
+    }
+
+    public int add(Long itemId, int shardNo, int quantity){
+        return em.createQuery(
+                "update StockShard s set s.quantity = s.quantity + :quantity" +
+                        " where s.itemId = :itemId" +
+                        " and s.shardNo = :shardNo")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .setParameter("shardNo", shardNo)
+                .executeUpdate();
+    }
+
+    /**
+     * 상품의 모든 분할 재고 row 에 잠금을 건다. (값은 바꾸지 않는 update)
+     */
+    public int lockAll(Long itemId){
+        return em.createQuery("update StockShard s set s.quantity = s.quantity where s.itemId = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+
+    /**
+     * 분할 번호 순 수량
+     */
+    public List<Integer> findQuantities(Long itemId){
+        return em.createQuery(
+                "select s.quantity from StockShard s" +
+                        " where s.itemId = :itemId" +
+                        " order by s.shardNo", Integer.class)
+                .setParameter("itemId", itemId)
+                .getResultList();
+    }
+
+    public long countShards(Long itemId){
+        return em.createQuery("select count(s) from StockShard s where s.itemId = :itemId", Long.class)
+                .setParameter("itemId", itemId)
+                .getSingleResult();
+    }
+
+    public void setQuantity(Long itemId, int shardNo, int quantity){
+        em.createQuery(
+                "update StockShard s set s.quantity = :quantity" +
+                        " where s.itemId = :itemId" +
+                        " and s.shardNo = :shardNo")
+                .setParameter("quantity", quantity)
+                .setParameter("itemId", itemId)
+                .setParameter("shardNo", shardNo)
+                .executeUpdate();
+    }
+
+    public int deleteAll(Long itemId){
+        return em.createQuery("delete from StockShard s where s.itemId = :itemId")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+    }
+}
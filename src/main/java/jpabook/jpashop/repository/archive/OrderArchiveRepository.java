@@ -0,0 +1,89 @@
+package jpabook.jpashop.repository.archive;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 주문 보관 처리
+ * 엔티티를 읽지 않고 insert ... select, delete 네이티브 쿼리로 옮긴다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderArchiveRepository {
+    private final EntityManager em;
+
+    /**
+     * 보관 대상 주문 id
+     * horizon 이전 주문 중 취소되었거나 배송완료된 주문
+     */
+    public List<Long> findArchivableIds(LocalDateTime horizon, int limit){
+        return em.createQuery(
+                "select o.id from Order o" +
+                        " join o.delivery d" +
+                        " where o.orderDate < :horizon" +
+                        " and (o.status = :cancel or d.status = :comp)" +
+                        " order by o.id"
+                ,Long.class)
+                .setParameter("horizon", horizon)
+                .setParameter("cancel", OrderStatus.CANCEL)
+                .setParameter("comp", DeliveryStatus.COMP)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * 주문 보관 테이블로 복사 후 원본 삭제
+     * @return 보관된 주문 수
+     */
+    public int moveToArchive(List<Long> orderIds){
+        em.flush();
+        List<?> deliveryIds = em.createNativeQuery(
+                "select delivery_id from orders where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+
+        int archived = em.createNativeQuery(
+                "insert into orders_archive" +
+                        " (order_id, member_id, member_name, order_date, status, delivery_status, city, street, zipcode, archived_at)" +
+                        " select o.order_id, m.member_id, m.name, o.order_date, o.status, d.status, d.city, d.street, d.zipcode, current_timestamp" +
+                        " from orders o" +
+                        " join member m on m.member_id = o.member_id" +
+                        " join delivery d on d.delivery_id = o.delivery_id" +
+                        " where o.order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createNativeQuery(
+                "insert into order_item_archive" +
+                        " (order_item_id, order_id, item_id, item_name, order_price, count)" +
+                        " select oi.order_item_id, oi.order_id, oi.item_id, i.name, oi.order_price, oi.count" +
+                        " from order_item oi" +
+                        " join item i on i.item_id = oi.item_id" +
+                        " where oi.order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+
+        em.createNativeQuery("delete from order_item where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        em.createNativeQuery("delete from orders where order_id in (:orderIds)")
+                .setParameter("orderIds", orderIds)
+                .executeUpdate();
+        if(!deliveryIds.isEmpty()){
+            em.createNativeQuery("delete from delivery where delivery_id in (:deliveryIds)")
+                    .setParameter("deliveryIds", deliveryIds)
+                    .executeUpdate();
+        }
+        em.clear();
+        return archived;
+    }
+
+    public long countRows(String table){
+        return ((Number) em.createNativeQuery("select count(*) from " + table).getSingleResult()).longValue();
+    }
+}
@@ -0,0 +1,71 @@
+package jpabook.jpashop.repository.fetch;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import lombok.Getter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.Set;
+
+/**
+ * 조회 시점에 고르는 fetch 계획 (엔티티에 선언한 @NamedEntityGraph)
+ *
+ * DEFAULT 는 지연 로딩 + default_batch_fetch_size 로 필요할 때 묶어서 가져온다.
+ * 같은 root 안에서는 선언 순서가 비용 순서다. (조인이 적은 것부터)
+ * 컬렉션을 포함한 계획(ORDER_ALL)에 setMaxResults 를 쓰면 하이버네이트가 메모리에서 페이징하므로
+ * 페이징 조회는 forPaging() 으로 컬렉션을 뺀 계획을 쓰고, 컬렉션은 batch fetch 로 가져온다.
+ *
+ * associations: 이 계획으로 미리 가져오는 연관관계. 지연 로딩 이벤트 이름과 같은 형식이다.
+ *  (프록시 초기화 = 엔티티 이름, 컬렉션 초기화 = 엔티티.필드)
+ */
+@Getter
+public enum FetchPlan {
+    DEFAULT(null, null),
+    ORDER_MEMBER(Order.class, "Order.withMember", "Member"),
+    ORDER_MEMBER_DELIVERY(Order.class, "Order.withMemberDelivery", "Member", "Delivery"),
+    ORDER_ALL(Order.class, "Order.withAll", "Member", "Delivery", "Order.orderItems", "Item"),
+    ORDER_ITEM_ITEM(OrderItem.class, "OrderItem.withItem", "Item"),
+    MEMBER_ORDERS(Member.class, "Member.withOrders", "Member.orders"),
+    DELIVERY_ORDER(Delivery.class, "Delivery.withOrder", "Order");
+
+    private final Class<?> root;
+    private final String graphName;
+    private final Set<String> associations;
+
+    FetchPlan(Class<?> root, String graphName, String... associations) {
+        this.root = root;
+        this.graphName = graphName;
+        this.associations = Set.of(associations);
+    }
+
+    public boolean fetchesCollection() {
+        return associations.stream().anyMatch(association -> association.contains("."));
+    }
+
+    /**
+     * 페이징 조회에 쓸 계획. 컬렉션을 포함하면 이 계획에 포함된 컬렉션 없는 계획 중 가장 큰 것
+     */
+    public FetchPlan forPaging() {
+        if (!fetchesCollection()) {
+            return this;
+        }
+        FetchPlan best = DEFAULT;
+        for (FetchPlan plan : values()) {
+            if (plan.root == root && !plan.fetchesCollection() && associations.containsAll(plan.associations)
+                    && plan.associations.size() > best.associations.size()) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    public <T> TypedQuery<T> apply(EntityManager em, TypedQuery<T> query) {
+        if (graphName != null) {
+            query.setHint("javax.persistence.fetchgraph", em.getEntityGraph(graphName));
+        }
+        return query;
+    }
+}
@@ -0,0 +1,212 @@
+package jpabook.jpashop.repository.fetch;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * endpoint 별 fetch 계획 추천
+ *
+ * 요청 처리 중에 일어난 지연 로딩(프록시 초기화, 컬렉션 초기화)을 endpoint 별로 센다.
+ * 지연 로딩 한번이 쿼리 한번이므로(batch fetch 포함), 요청당 평균 지연 로딩 수가 곧 줄일 수 있는 쿼리 수다.
+ * 추천은 자주 초기화되는 연관관계를 모두 포함하는 계획 중 가장 싼 것이다.
+ *
+ * auto-apply 면 min-samples 요청 이후 추천 계획을 그 endpoint 에 고정해서 적용한다.
+ * (적용 후에는 지연 로딩이 사라져 추천이 다시 바뀌므로 고정한다. 초기화는 reset)
+ * 페이징 조회(resolvePaged)에는 컬렉션 fetch 계획을 적용하지 않는다. 컬렉션은 batch fetch 로 가져온다.
+ */
+@Slf4j
+@Component
+public class FetchPlanAdvisor {
+    //요청당 평균이 이 값 이상인 연관관계만 반영
+    private static final double MIN_LOADS_PER_REQUEST = 0.1;
+
+    private final boolean enabled;
+    private final boolean autoApply;
+    private final long minSamples;
+    private final ThreadLocal<String> currentEndpoint = new ThreadLocal<>();
+    private final Map<String, EndpointProfile> profiles = new ConcurrentHashMap<>();
+
+    public FetchPlanAdvisor(@Value("${jpashop.fetch-plan.advisor:false}") boolean enabled,
+                            @Value("${jpashop.fetch-plan.auto-apply:false}") boolean autoApply,
+                            @Value("${jpashop.fetch-plan.min-samples:20}") long minSamples) {
+        this.enabled = enabled;
+        this.autoApply = enabled && autoApply;
+        this.minSamples = minSamples;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 호출 지점에서 사용할 계획
+     * auto-apply 가 꺼져 있거나 아직 표본이 부족하면 호출 지점이 지정한 계획을 그대로 쓴다.
+     */
+    public FetchPlan resolve(Class<?> root, FetchPlan declared) {
+        return resolve(root, declared, false);
+    }
+
+    /**
+     * setMaxResults 를 쓰는 호출 지점. 컬렉션 fetch 계획은 컬렉션을 뺀 계획으로 바꾼다.
+     */
+    public FetchPlan resolvePaged(Class<?> root, FetchPlan declared) {
+        return resolve(root, declared, true);
+    }
+
+    private FetchPlan resolve(Class<?> root, FetchPlan declared, boolean paged) {
+        FetchPlan plan = applied(root, declared);
+        return paged ? plan.forPaging() : plan;
+    }
+
+    private FetchPlan applied(Class<?> root, FetchPlan declared) {
+        String endpoint = currentEndpoint.get();
+        if (!autoApply || endpoint == null) {
+            return declared;
+        }
+        EndpointProfile profile = profiles.get(endpoint);
+        if (profile == null) {
+            return declared;
+        }
+        FetchPlan applied = profile.applied.get(root);
+        if (applied == null && profile.requests.sum() >= minSamples) {
+            applied = profile.applied.computeIfAbsent(root, r -> {
+                FetchPlan plan = recommend(profile, r);
+                log.info("fetch plan {} applied to {} ({})", plan, profile.endpoint, r.getSimpleName());
+                return plan;
+            });
+        }
+        return applied == null ? declared : applied;
+    }
+
+    //==요청 경계 (FetchPlanInterceptor)==//
+    void begin(String endpoint) {
+        currentEndpoint.set(endpoint);
+        profiles.computeIfAbsent(endpoint, EndpointProfile::new).requests.increment();
+    }
+
+    void end() {
+        currentEndpoint.remove();
+    }
+
+    //==지연 로딩 (LazyLoadListener)==//
+    void recordLazyLoad(String association) {
+        String endpoint = currentEndpoint.get();
+        if (endpoint == null) {
+            return;
+        }
+        //요청 중에 reset 되었을 수 있다.
+        profiles.computeIfAbsent(endpoint, EndpointProfile::new).loads.computeIfAbsent(association, a -> new LongAdder()).increment();
+    }
+
+    public void reset() {
+        profiles.clear();
+    }
+
+    /**
+     * endpoint 별 요청 수, 연관관계별 요청당 지연 로딩 수, root 별 추천 계획과 요청당 절약되는 쿼리 수
+     */
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        profiles.values().forEach(profile -> {
+            long requests = profile.requests.sum();
+            Map<String, Object> loads = new LinkedHashMap<>();
+            profile.loads.forEach((association, count) -> loads.put(association, (double) count.sum() / requests));
+
+            Map<String, Object> plans = new LinkedHashMap<>();
+            for (Class<?> root : roots()) {
+                FetchPlan plan = recommend(profile, root);
+                if (plan == FetchPlan.DEFAULT) {
+                    continue;
+                }
+                Map<String, Object> recommendation = new LinkedHashMap<>();
+                recommendation.put("recommended", plan);
+                recommendation.put("queriesSavedPerRequest", queriesSaved(profile, plan));
+                recommendation.put("applied", profile.applied.get(root));
+                plans.put(root.getSimpleName(), recommendation);
+            }
+
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("requests", requests);
+            value.put("lazyLoadsPerRequest", loads);
+            value.put("plans", plans);
+            report.put(profile.endpoint, value);
+        });
+        return report;
+    }
+
+    private FetchPlan recommend(EndpointProfile profile, Class<?> root) {
+        long requests = Math.max(1, profile.requests.sum());
+        FetchPlan best = FetchPlan.DEFAULT;
+        int bestCovered = 0;
+        for (FetchPlan plan : FetchPlan.values()) {
+            if (plan.getRoot() != root) {
+                continue;
+            }
+            int covered = 0;
+            boolean missing = false;
+            for (Map.Entry<String, LongAdder> e : profile.loads.entrySet()) {
+                if ((double) e.getValue().sum() / requests < MIN_LOADS_PER_REQUEST) {
+                    continue;
+                }
+                if (plan.getAssociations().contains(e.getKey())) {
+                    covered++;
+                } else if (coveredBySomePlan(root, e.getKey())) {
+                    missing = true;
+                }
+            }
+            //빠짐없이 덮는 가장 싼 계획, 없으면 가장 많이 덮는 계획
+            if (!missing && covered > 0) {
+                return plan;
+            }
+            if (covered > bestCovered) {
+                best = plan;
+                bestCovered = covered;
+            }
+        }
+        return best;
+    }
+
+    private double queriesSaved(EndpointProfile profile, FetchPlan plan) {
+        long requests = Math.max(1, profile.requests.sum());
+        return profile.loads.entrySet().stream()
+                .filter(e -> plan.getAssociations().contains(e.getKey()))
+                .mapToDouble(e -> (double) e.getValue().sum() / requests)
+                .sum();
+    }
+
+    private static boolean coveredBySomePlan(Class<?> root, String association) {
+        for (FetchPlan plan : FetchPlan.values()) {
+            if (plan.getRoot() == root && plan.getAssociations().contains(association)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Iterable<Class<?>> roots() {
+        Map<Class<?>, Boolean> roots = new LinkedHashMap<>();
+        for (FetchPlan plan : FetchPlan.values()) {
+            if (plan.getRoot() != null) {
+                roots.put(plan.getRoot(), true);
+            }
+        }
+        return roots.keySet();
+    }
+
+    private static class EndpointProfile {
+        final String endpoint;
+        final LongAdder requests = new LongAdder();
+        final Map<String, LongAdder> loads = new ConcurrentHashMap<>();
+        final Map<Class<?>, FetchPlan> applied = new ConcurrentHashMap<>();
+
+        EndpointProfile(String endpoint) {
+            this.endpoint = endpoint;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package jpabook.jpashop.repository.fetch;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * fetch 계획 추천기 설정 (jpashop.fetch-plan.advisor=true)
+ * 하이버네이트 이벤트 리스너로 지연 로딩을 받고, 인터셉터로 요청이 어느 endpoint 인지 표시한다.
+ */
+@Configuration
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "jpashop.fetch-plan", name = "advisor", havingValue = "true")
+public class FetchPlanConfig implements WebMvcConfigurer {
+    private final FetchPlanAdvisor advisor;
+    private final EntityManagerFactory emf;
+
+    @PostConstruct
+    public void registerListeners() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        LazyLoadListener listener = new LazyLoadListener(advisor);
+        registry.appendListeners(EventType.LOAD, listener);
+        registry.appendListeners(EventType.INIT_COLLECTION, listener);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                advisor.begin(request.getMethod() + " " + (pattern == null ? request.getRequestURI() : pattern));
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+                advisor.end();
+            }
+        }).excludePathPatterns("/api/fetch-plans");
+    }
+}
@@ -0,0 +1,46 @@
+package jpabook.jpashop.repository.fetch;
+
+import org.hibernate.HibernateException;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+
+/**
+ * 지연 로딩 감지
+ * 프록시 초기화는 IMMEDIATE_LOAD 로드 이벤트, 컬렉션 초기화는 INIT_COLLECTION 이벤트로 들어온다.
+ * 기본 리스너 뒤에 붙어서 기록만 한다.
+ */
+class LazyLoadListener implements LoadEventListener, InitializeCollectionEventListener {
+    private final FetchPlanAdvisor advisor;
+
+    LazyLoadListener(FetchPlanAdvisor advisor) {
+        this.advisor = advisor;
+    }
+
+    @Override
+    public void onLoad(LoadEvent event, LoadType loadType) throws HibernateException {
+        if (loadType == LoadEventListener.IMMEDIATE_LOAD) {
+            advisor.recordLazyLoad(simpleName(event.getEntityClassName()));
+        }
+    }
+
+    @Override
+    public void onInitializeCollection(InitializeCollectionEvent event) throws HibernateException {
+        advisor.recordLazyLoad(simpleName(event.getCollection().getRole()));
+    }
+
+    /**
+     * jpabook.jpashop.domain.Member > Member
+     * jpabook.jpashop.domain.Order.orderItems > Order.orderItems
+     */
+    private static String simpleName(String name) {
+        int end = name.length();
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot > 0 && Character.isLowerCase(name.charAt(lastDot + 1))) {
+            end = lastDot;
+        }
+        int start = name.lastIndexOf('.', end - 1) + 1;
+        return name.substring(start);
+    }
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.repository.item.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ItemQueryDto {
+    private Long id;
+    private String name;
+    private int price;
+    private long stockQuantity;
+}
@@ -0,0 +1,27 @@
+package jpabook.jpashop.repository.item.query;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class ItemQueryRepository {
+    private final EntityManager em;
+
+    /**
+     * 재고는 분할 재고까지 합친 값
+     * 상품 등록, 수정 후 redirect 로 바로 읽는 화면이므로 조회 합치기(SingleFlight)를 쓰지 않는다.
+     */
+    public List<ItemQueryDto> findItemDtos(){
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.item.query.ItemQueryDto(i.id, i.name, i.price," +
+                        " i.stockQuantity + coalesce((select sum(s.quantity) from StockShard s where s.itemId = i.id), 0))" +
+                        " from Item i" +
+                        " order by i.id"
+                , ItemQueryDto.class)
+                .getResultList();
+    }
+}
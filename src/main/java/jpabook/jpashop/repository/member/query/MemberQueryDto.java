@@ -0,0 +1,11 @@
+package jpabook.jpashop.repository.member.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MemberQueryDto {
+    private Long id;
+    private String name;
+}
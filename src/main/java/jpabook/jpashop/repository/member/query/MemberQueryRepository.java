@@ -0,0 +1,43 @@
+package jpabook.jpashop.repository.member.query;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@Repository
+@RequiredArgsConstructor
+public class MemberQueryRepository {
+    private final EntityManager em;
+
+    /**
+     * keyset 페이징
+     * offset 대신 마지막으로 받은 id 이후부터 조회하므로 뒤쪽 페이지도 PK 인덱스 범위 스캔으로 끝난다.
+     */
+    public List<MemberQueryDto> findMemberDtos(Long lastId, int limit){
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.member.query.MemberQueryDto(m.id, m.name)" +
+                        " from Member m" +
+                        " where m.id > :lastId" +
+                        " order by m.id"
+                , MemberQueryDto.class)
+                .setParameter("lastId", lastId)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    public List<MemberViewDto> findMemberViews(){
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.member.query.MemberViewDto(m.id, m.name, m.Address)" +
+                        " from Member m" +
+                        " order by m.id"
+                , MemberViewDto.class)
+                .getResultList();
+    }
+
+    public long countMembers(){
+        return em.createQuery("select count(m) from Member m", Long.class)
+                .getSingleResult();
+    }
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.repository.member.query;
+
+import jpabook.jpashop.domain.Address;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 회원 목록 화면 한 줄
+ */
+@Data
+@AllArgsConstructor
+public class MemberViewDto {
+    private Long id;
+    private String name;
+    private Address address;
+}
@@ -0,0 +1,27 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 회원 주문내역 한 줄 (주문 합계는 페이지 단위로 따로 조회해서 채운다)
+ */
+@Data
+public class MemberOrderHistoryDto {
+    private Long orderId;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private DeliveryStatus deliveryStatus;
+    private long totalPrice;
+    private long itemCount;
+
+    public MemberOrderHistoryDto(Long orderId, LocalDateTime orderDate, OrderStatus status, DeliveryStatus deliveryStatus) {
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+        this.status = status;
+        this.deliveryStatus = deliveryStatus;
+    }
+}
@@ -0,0 +1,20 @@
+package jpabook.jpashop.repository.order.query;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문상품 1건 + 주문 식별정보
+ */
+@Data
+@AllArgsConstructor
+public class OrderLineQueryDto {
+    private Long orderId;
+    private Long memberId;
+    private LocalDateTime orderDate;
+    private Long itemId;
+    private int orderPrice;
+    private int count;
+}
@@ -1,9 +1,20 @@
 package jpabook.jpashop.repository.order.query;
 
+import jpabook.jpashop.domain.OrderSearch;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.support.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -14,6 +25,7 @@ import static java.util.stream.Collectors.*;
 @RequiredArgsConstructor
 public class OrderQueryRepository {
     private final EntityManager em;
+    private final SingleFlight singleFlight;
 
     public List<OrderQueryDto> findOrderQueryDtos(){
         List<OrderQueryDto> orders = findOrders();
@@ -21,7 +33,53 @@ public class OrderQueryRepository {
         return orders;
     }
 
+    /**
+     * 주문 목록 화면용
+     * 회원명, 대표상품(가장 먼저 담긴 주문상품)까지 한 쿼리로 가져온다. 화면 렌더링 중에 지연 로딩이 일어나지 않는다.
+     */
+    public List<OrderViewDto> findOrderViews(OrderSearch orderSearch){
+        return findOrderViews(orderSearch, 0L, 1000);
+    }
+
+    /**
+     * 주문 목록 화면용 keyset 페이징 (id 순)
+     * 주문, 취소 후 redirect 로 바로 읽는 화면이므로 조회 합치기(SingleFlight)를 쓰지 않는다.
+     * 먼저 시작된 조회에 합류하면 방금 커밋한 주문이 빠진 목록을 받을 수 있다.
+     */
+    public List<OrderViewDto> findOrderViews(OrderSearch orderSearch, Long lastId, int limit){
+        //회원명 앞뒤 공백은 무시한다.
+        String memberName = StringUtils.hasText(orderSearch.getMemberName()) ? orderSearch.getMemberName().trim() : null;
+        OrderStatus status = orderSearch.getOrderStatus();
+        String jpql = "select new jpabook.jpashop.repository.order.query.OrderViewDto(o.id, m.name, i.name, oi.orderPrice, oi.count, o.status, o.orderDate)" +
+                " from Order o" +
+                " join o.member m" +
+                " join o.orderItems oi" +
+                " join oi.item i" +
+                " where oi.id = (select min(oi2.id) from OrderItem oi2 where oi2.order = o)" +
+                " and o.id > :lastId";
+        if (status != null) {
+            jpql += " and o.status = :status";
+        }
+        if (memberName != null) {
+            jpql += " and m.name like :name";
+        }
+        TypedQuery<OrderViewDto> query = em.createQuery(jpql + " order by o.id", OrderViewDto.class)
+                .setParameter("lastId", lastId)
+                .setMaxResults(limit);
+        if (status != null) {
+            query.setParameter("status", status);
+        }
+        if (memberName != null) {
+            query.setParameter("name", "%" + memberName + "%");
+        }
+        return query.getResultList();
+    }
+
     public List<OrderQueryDto> findAllByDto_optimization() {
+        return singleFlight.execute("ordersV5", List.of(), this::queryAllByDto_optimization);
+    }
+
+    private List<OrderQueryDto> queryAllByDto_optimization() {
         List<OrderQueryDto> result = findOrders();
         List<Long> collect = result.stream().map(o -> o.getOrderId()).collect(toList());
 
@@ -31,6 +89,76 @@ public class OrderQueryRepository {
         return result;
     }
 
+    /**
+     * 주문일 범위 조회 (주문일, id 순 keyset 페이징)
+     * 보관 테이블로 옮겨진 주문도 같은 범위면 함께 반환한다.
+     * 운영, 보관 테이블에서 각각 limit 건을 같은 순서로 읽어 합친 뒤 앞에서 limit 건만 남긴다.
+     * @param lastOrderDate 이전 페이지 마지막 주문일, 첫 페이지는 null
+     * @param lastId 이전 페이지 마지막 주문 id
+     */
+    public List<OrderQueryDto> findAllByDto_optimization(LocalDateTime from, LocalDateTime to,
+                                                         LocalDateTime lastOrderDate, Long lastId, int limit) {
+        return singleFlight.execute("ordersV5Range", Arrays.asList(from, to, lastOrderDate, lastId, limit),
+                () -> queryAllByDto_optimization(from, to, lastOrderDate, lastId, limit));
+    }
+
+    private List<OrderQueryDto> queryAllByDto_optimization(LocalDateTime from, LocalDateTime to,
+                                                           LocalDateTime lastOrderDate, Long lastId, int limit) {
+        List<OrderQueryDto> result = findRangePage(
+                "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id,m.name,o.orderDate,o.status,d.address)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d", "o", from, to, lastOrderDate, lastId, limit);
+        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(toOrderIds(result));
+        result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
+
+        List<OrderQueryDto> archived = findRangePage(
+                "select new jpabook.jpashop.repository.order.query.OrderQueryDto(a.id,a.memberName,a.orderDate,a.status,a.address)" +
+                        " from OrderArchive a", "a", from, to, lastOrderDate, lastId, limit);
+        Map<Long, List<OrderItemQueryDto>> archivedItemMap = findArchivedOrderItemMap(toOrderIds(archived));
+        archived.forEach(o -> o.setOrderItems(archivedItemMap.get(o.getOrderId())));
+
+        result.addAll(archived);
+        result.sort(Comparator.comparing(OrderQueryDto::getOrderDate).thenComparing(OrderQueryDto::getOrderId));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private List<OrderQueryDto> findRangePage(String select, String alias, LocalDateTime from, LocalDateTime to,
+                                              LocalDateTime lastOrderDate, Long lastId, int limit){
+        String jpql = select + " where " + alias + ".orderDate between :from and :to";
+        if(lastOrderDate != null){
+            jpql += " and (" + alias + ".orderDate > :lastOrderDate" +
+                    " or (" + alias + ".orderDate = :lastOrderDate and " + alias + ".id > :lastId))";
+        }
+        TypedQuery<OrderQueryDto> query = em.createQuery(jpql + " order by " + alias + ".orderDate, " + alias + ".id", OrderQueryDto.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(limit);
+        if(lastOrderDate != null){
+            query.setParameter("lastOrderDate", lastOrderDate)
+                    .setParameter("lastId", lastId == null ? 0L : lastId);
+        }
+        return query.getResultList();
+    }
+
+    private List<Long> toOrderIds(List<OrderQueryDto> orders){
+        return orders.stream().map(OrderQueryDto::getOrderId).collect(toList());
+    }
+
+    private Map<Long, List<OrderItemQueryDto>> findArchivedOrderItemMap(List<Long> orderIds) {
+        if(orderIds.isEmpty()){
+            return Collections.emptyMap();
+        }
+        return em.createQuery(
+                        "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(a.orderId, a.itemName, a.orderPrice, a.count)" +
+                                " from OrderItemArchive a" +
+                                " where a.orderId in :orderIds"
+                        , OrderItemQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList()
+                .stream().collect(groupingBy(OrderItemQueryDto::getOrderId));
+    }
+
     private List<OrderQueryDto> findOrders(){
         return  em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderQueryDto(o.id,m.name,o.orderDate,o.status,d.address)" +
@@ -52,6 +180,9 @@ public class OrderQueryRepository {
     }
 
     private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
+        if(orderIds.isEmpty()){
+            return Collections.emptyMap();
+        }
         return em.createQuery(
                         "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, i.price, oi.count)" +
                                 " from OrderItem oi" +
@@ -64,6 +195,165 @@ public class OrderQueryRepository {
     }
 
 
+    /**
+     * 회원 주문내역 keyset 페이징 (최근 주문부터, 보관 주문 포함)
+     * 운영, 보관 테이블의 (member_id, order_date) 인덱스를 각각 역순으로 limit 건만 읽어 합친 뒤 앞에서 limit 건만 남긴다.
+     * 회원의 주문 수와 관계없이 페이지 비용이 같다. 주문 합계는 그 페이지 주문의 주문상품만 IN 절로 한 번 더 조회한다.
+     * @param lastOrderDate 이전 페이지 마지막 주문일, 첫 페이지는 null
+     * @param lastId 이전 페이지 마지막 주문 id (같은 주문일 정렬용)
+     */
+    public List<MemberOrderHistoryDto> findMemberOrderHistory(Long memberId, LocalDateTime lastOrderDate, Long lastId, int limit){
+        List<MemberOrderHistoryDto> live = findHistoryPage(
+                "select new jpabook.jpashop.repository.order.query.MemberOrderHistoryDto(o.id, o.orderDate, o.status, d.status)" +
+                        " from Order o" +
+                        " join o.delivery d" +
+                        " where o.member.id = :memberId", "o", memberId, lastOrderDate, lastId, limit);
+        fillTotals(live, "select oi.order.id, sum(oi.orderPrice * oi.count), count(oi)" +
+                " from OrderItem oi" +
+                " where oi.order.id in :orderIds" +
+                " group by oi.order.id");
+
+        List<MemberOrderHistoryDto> archived = findHistoryPage(
+                "select new jpabook.jpashop.repository.order.query.MemberOrderHistoryDto(a.id, a.orderDate, a.status, a.deliveryStatus)" +
+                        " from OrderArchive a" +
+                        " where a.memberId = :memberId", "a", memberId, lastOrderDate, lastId, limit);
+        fillTotals(archived, "select a.orderId, sum(a.orderPrice * a.count), count(a)" +
+                " from OrderItemArchive a" +
+                " where a.orderId in :orderIds" +
+                " group by a.orderId");
+
+        //두 조회 사이에 보관된 주문은 양쪽에 나올 수 있다.
+        Map<Long, MemberOrderHistoryDto> merged = new LinkedHashMap<>();
+        live.forEach(o -> merged.put(o.getOrderId(), o));
+        archived.forEach(o -> merged.putIfAbsent(o.getOrderId(), o));
+        List<MemberOrderHistoryDto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(MemberOrderHistoryDto::getOrderDate)
+                .thenComparing(MemberOrderHistoryDto::getOrderId).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private List<MemberOrderHistoryDto> findHistoryPage(String select, String alias, Long memberId,
+                                                        LocalDateTime lastOrderDate, Long lastId, int limit){
+        String jpql = select;
+        if(lastOrderDate != null){
+            jpql += " and (" + alias + ".orderDate < :lastOrderDate" +
+                    " or (" + alias + ".orderDate = :lastOrderDate and " + alias + ".id < :lastId))";
+        }
+        TypedQuery<MemberOrderHistoryDto> query = em.createQuery(jpql + " order by " + alias + ".orderDate desc, " + alias + ".id desc", MemberOrderHistoryDto.class)
+                .setParameter("memberId", memberId)
+                .setMaxResults(limit);
+        if(lastOrderDate != null){
+            query.setParameter("lastOrderDate", lastOrderDate)
+                    .setParameter("lastId", lastId == null ? Long.MAX_VALUE : lastId);
+        }
+        return query.getResultList();
+    }
+
+    /**
+     * 페이지 주문의 주문상품만 IN 절로 묶어서 주문 합계를 채운다.
+     * @param jpql 결과 [주문 id, 합계, 주문상품 수]
+     */
+    private void fillTotals(List<MemberOrderHistoryDto> orders, String jpql){
+        if(orders.isEmpty()){
+            return;
+        }
+        List<Object[]> totals = em.createQuery(jpql, Object[].class)
+                .setParameter("orderIds", orders.stream().map(MemberOrderHistoryDto::getOrderId).collect(toList()))
+                .getResultList();
+        Map<Long, Object[]> totalMap = totals.stream().collect(toMap(row -> (Long) row[0], row -> row));
+        for(MemberOrderHistoryDto order : orders){
+            Object[] total = totalMap.get(order.getOrderId());
+            if(total != null){
+                order.setTotalPrice(((Number) total[1]).longValue());
+                order.setItemCount(((Number) total[2]).longValue());
+            }
+        }
+    }
+
+    /**
+     * 정산 리포트용 keyset 페이징
+     * 주문 id 순으로 orderLimit 건의 주문을 고르고 그 주문의 주문상품 행을 모두 반환한다. 한 주문의 행은 한 페이지 안에 모인다.
+     */
+    public List<OrderReportRowDto> findReportRows(LocalDateTime from, LocalDateTime to, Long lastOrderId, int orderLimit){
+        List<Long> orderIds = em.createQuery(
+                "select o.id from Order o" +
+                        " where o.orderDate between :from and :to" +
+                        " and o.id > :lastId" +
+                        " order by o.id", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("lastId", lastOrderId)
+                .setMaxResults(orderLimit)
+                .getResultList();
+        if(orderIds.isEmpty()){
+            return Collections.emptyList();
+        }
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderReportRowDto(o.id, m.name, o.orderDate, o.status, i.name, oi.orderPrice, oi.count)" +
+                        " from OrderItem oi" +
+                        " join oi.order o" +
+                        " join o.member m" +
+                        " join oi.item i" +
+                        " where o.id in :orderIds" +
+                        " order by o.id, oi.id"
+                , OrderReportRowDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 정산 리포트용 keyset 페이징 (보관 주문)
+     */
+    public List<OrderReportRowDto> findArchivedReportRows(LocalDateTime from, LocalDateTime to, Long lastOrderId, int orderLimit){
+        List<Long> orderIds = em.createQuery(
+                "select a.id from OrderArchive a" +
+                        " where a.orderDate between :from and :to" +
+                        " and a.id > :lastId" +
+                        " order by a.id", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("lastId", lastOrderId)
+                .setMaxResults(orderLimit)
+                .getResultList();
+        if(orderIds.isEmpty()){
+            return Collections.emptyList();
+        }
+        return em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderReportRowDto(a.id, a.memberName, a.orderDate, a.status, ai.itemName, ai.orderPrice, ai.count)" +
+                        " from OrderArchive a, OrderItemArchive ai" +
+                        " where ai.orderId = a.id" +
+                        " and a.id in :orderIds" +
+                        " order by a.id, ai.id"
+                , OrderReportRowDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    public long countReportOrders(LocalDateTime from, LocalDateTime to){
+        Long hot = em.createQuery("select count(o) from Order o where o.orderDate between :from and :to", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getSingleResult();
+        Long archived = em.createQuery("select count(a) from OrderArchive a where a.orderDate between :from and :to", Long.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .getSingleResult();
+        return hot + archived;
+    }
+
+    /**
+     * v6 플랫 조회 결과 row 수 (주문상품 수), 엔티티나 DTO 를 만들지 않는다.
+     */
+    public long countFlatRows() {
+        return em.createQuery(
+                "select count(oi) from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i", Long.class)
+                .getSingleResult();
+    }
+
     public List<OrderFlatDto> findAllByDto_flat() {
         return em.createQuery(
                 "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, i.price, oi.count)" +
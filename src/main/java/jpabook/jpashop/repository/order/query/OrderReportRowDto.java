@@ -0,0 +1,22 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 정산 리포트 한 줄 (주문상품 단위)
+ */
+@Data
+@AllArgsConstructor
+public class OrderReportRowDto {
+    private Long orderId;
+    private String memberName;
+    private LocalDateTime orderDate;
+    private OrderStatus status;
+    private String itemName;
+    private int orderPrice;
+    private int count;
+}
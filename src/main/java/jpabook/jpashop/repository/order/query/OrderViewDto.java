@@ -0,0 +1,22 @@
+package jpabook.jpashop.repository.order.query;
+
+import jpabook.jpashop.domain.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 주문 목록 화면 한 줄 (대표상품 = 주문의 첫번째 주문상품)
+ */
+@Data
+@AllArgsConstructor
+public class OrderViewDto {
+    private Long id;
+    private String memberName;
+    private String itemName;    //대표상품
+    private int orderPrice;
+    private int count;
+    private OrderStatus status;
+    private LocalDateTime orderDate;
+}
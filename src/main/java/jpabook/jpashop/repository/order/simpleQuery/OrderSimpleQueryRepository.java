@@ -1,5 +1,6 @@
 package jpabook.jpashop.repository.order.simpleQuery;
 
+import jpabook.jpashop.repository.support.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
@@ -11,13 +12,14 @@ import java.util.List;
 public class OrderSimpleQueryRepository {
 
     private final EntityManager em;
+    private final SingleFlight singleFlight;
 
     public List<OrderSimpleQueryDto> findOrderDtos(){
-        return em.createQuery(
+        return singleFlight.execute("simpleOrders", List.of(), () -> em.createQuery(
                 "select new jpabook.jpashop.repository.order.simpleQuery.OrderSimpleQueryDto(o.id, m.name, o.orderDate, o.status, d.address) "+
                         " from Order o" +
                         " join o.member m" +
                         " join o.delivery d"
-                ,OrderSimpleQueryDto.class).getResultList();
+                ,OrderSimpleQueryDto.class).getResultList());
     }
 }
@@ -0,0 +1,38 @@
+package jpabook.jpashop.repository.support;
+
+import org.hibernate.Hibernate;
+
+import javax.persistence.EntityManager;
+import java.util.Collection;
+
+/**
+ * JPQL 벌크 update 전후 영속성 컨텍스트 처리
+ *
+ * 벌크 update 는 영속성 컨텍스트를 거치지 않으므로
+ * 실행 전에 flush 해서 호출한 쪽의 변경을 먼저 내보내고,
+ * 실행 후에는 em.clear() 대신 이미 읽혀 있는 대상 엔티티만 refresh 한다. (다른 엔티티, OSIV 엔티티는 그대로 둔다)
+ */
+public final class BulkUpdates {
+    private BulkUpdates() {
+    }
+
+    public static void beforeUpdate(EntityManager em){
+        em.flush();
+    }
+
+    /**
+     * 영속성 컨텍스트에 읽혀 있는 엔티티만 DB 값으로 다시 읽는다.
+     * getReference 는 없으면 프록시만 만들고 SQL 을 실행하지 않는다.
+     */
+    public static void refreshLoaded(EntityManager em, Class<?> type, Collection<Long> ids){
+        for(Long id : ids){
+            refreshIfLoaded(em, em.getReference(type, id));
+        }
+    }
+
+    public static void refreshIfLoaded(EntityManager em, Object entity){
+        if(entity != null && Hibernate.isInitialized(entity) && em.contains(entity)){
+            em.refresh(entity);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package jpabook.jpashop.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 같은 조회 동시 실행 합치기 (single-flight)
+ *
+ * 같은 키의 조회가 실행 중이면 새로 실행하지 않고 그 결과를 함께 받는다. 실행이 끝나면 키를 지우므로 캐시가 아니다.
+ * 키는 stripe 단위로 잠그므로 서로 다른 키끼리는 거의 경합하지 않는다.
+ *
+ * 결과를 여러 요청이 공유하므로 DTO 조회에만 사용한다. (엔티티는 조회한 영속성 컨텍스트에 묶여 있어서 공유할 수 없다)
+ * 공유 결과는 수정할 수 없는 List 로 반환한다.
+ * 먼저 시작된 조회에 합류하므로 합류 직전에 커밋된 변경은 보이지 않을 수 있다.
+ * 그래서 쓰기 직후 redirect 로 읽는 화면 조회(주문 목록, 상품 목록)에는 쓰지 않는다.
+ */
+@Component
+public class SingleFlight {
+    private static final int STRIPES = 64;
+
+    private final boolean enabled;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public SingleFlight(@Value("${jpashop.single-flight.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @param name 조회 이름 (통계 단위)
+     * @param args 정규화된 조회 조건. name 과 함께 키가 된다.
+     */
+    public <T> List<T> execute(String name, List<?> args, Supplier<List<T>> query) {
+        Stats stat = stats.computeIfAbsent(name, n -> new Stats());
+        stat.calls.increment();
+        if (!enabled) {
+            stat.executions.increment();
+            return query.get();
+        }
+
+        Key key = new Key(name, args);
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        CompletableFuture<List<?>> flight;
+        boolean leader = false;
+        synchronized (stripe) {
+            flight = stripe.inFlight.get(key);
+            if (flight == null) {
+                flight = new CompletableFuture<>();
+                stripe.inFlight.put(key, flight);
+                leader = true;
+            }
+        }
+
+        if (leader) {
+            stat.executions.increment();
+            try {
+                List<T> result = List.copyOf(query.get());
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (stripe) {
+                    stripe.inFlight.remove(key);
+                }
+            }
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            List<T> shared = (List<T>) flight.join();
+            return shared;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 조회 이름별 호출 수, 실제 실행 수, 합쳐진 비율 (1 - 실행/호출)
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        stats.forEach((name, stat) -> {
+            long calls = stat.calls.sum();
+            long executions = stat.executions.sum();
+            Map<String, Object> value = new LinkedHashMap<>();
+            value.put("calls", calls);
+            value.put("executions", executions);
+            value.put("coalescingRatio", calls == 0 ? 0.0 : 1 - (double) executions / calls);
+            result.put(name, value);
+        });
+        return result;
+    }
+
+    private static class Stripe {
+        final Map<Key, CompletableFuture<List<?>>> inFlight = new HashMap<>();
+    }
+
+    private static class Stats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder executions = new LongAdder();
+    }
+
+    private static class Key {
+        final String name;
+        final List<?> args;
+        final int hash;
+
+        Key(String name, List<?> args) {
+            this.name = name;
+            this.args = args;
+            this.hash = Objects.hash(name, args);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return name.equals(other.name) && args.equals(other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package jpabook.jpashop.reservation;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 재고 예약 하나
+ * 상태 전이는 CAS 로만 한다. (예약 API, 만료 스레드, DB 반영 스레드가 동시에 건드린다)
+ */
+@Getter
+public class Hold {
+    private final String id;
+    private final Long itemId;
+    private final int quantity;
+    private final LocalDateTime expiresAt;
+    private final long deadlineNanos;
+    private final AtomicReference<HoldState> state;
+
+    public Hold(String id, Long itemId, int quantity, LocalDateTime expiresAt, long deadlineNanos, HoldState state) {
+        this.id = id;
+        this.itemId = itemId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+        this.deadlineNanos = deadlineNanos;
+        this.state = new AtomicReference<>(state);
+    }
+
+    public HoldState getState() {
+        return state.get();
+    }
+
+    boolean transit(HoldState from, HoldState to) {
+        return state.compareAndSet(from, to);
+    }
+}
@@ -0,0 +1,10 @@
+package jpabook.jpashop.reservation;
+
+public enum HoldState {
+    PENDING,    //메모리에만 있음 (DB 재고는 아직 그대로)
+    FLUSHING,   //DB 반영중
+    PERSISTED,  //stock_hold row 가 있고 DB 재고에서 빠져 있음
+    CONSUMED,   //주문으로 전환
+    RELEASED,   //만료 또는 취소로 반납
+    FAILED      //DB 반영 실패 (DB 재고 부족)
+}
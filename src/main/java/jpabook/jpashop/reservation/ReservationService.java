@@ -0,0 +1,45 @@
+package jpabook.jpashop.reservation;
+
+import jpabook.jpashop.repository.StockHoldRepository;
+import jpabook.jpashop.service.ChangeFeedService;
+import jpabook.jpashop.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 예약한 재고로 주문
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+@ConditionalOnProperty(prefix = "jpashop.reservation", name = "enabled", havingValue = "true")
+public class ReservationService {
+    private final StockLedger stockLedger;
+    private final StockHoldRepository stockHoldRepository;
+    private final OrderService orderService;
+
+    public Hold hold(Long itemId, int quantity){
+        return stockLedger.hold(itemId, quantity);
+    }
+
+    public void release(String holdId){
+        stockLedger.release(holdId);
+    }
+
+    /**
+     * 예약 수량 그대로 주문한다. 주문이 실패하면 예약은 남는다.
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
+    public Long order(Long memberId, String holdId){
+        Hold hold = stockLedger.find(holdId);
+        boolean persisted = stockLedger.consume(hold) == HoldState.PERSISTED;
+        if(persisted){
+            stockHoldRepository.delete(hold.getId());
+        }
+        Long orderId = orderService.order(memberId, hold.getItemId(), hold.getQuantity(), persisted);
+        stockLedger.markHoldOrder(orderId);
+        return orderId;
+    }
+}
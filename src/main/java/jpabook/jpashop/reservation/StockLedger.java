@@ -0,0 +1,416 @@
+package jpabook.jpashop.reservation;
+
+import jpabook.jpashop.domain.StockHold;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.event.StockChangedEvent;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.stream.Collectors.groupingBy;
+
+/**
+ * 재고 예약 원장
+ *
+ * 결제 화면에 들어온 구매자의 재고를 hold-ttl-seconds 동안 잡아둔다.
+ * 예약은 메모리에서만 처리한다. 상품별 예약 가능 수량(StripedStock)을 CAS 로 차감하고 타이밍 휠에 만료를 등록한다.
+ * 새 예약과 반납은 flush-interval-ms 마다 상품별 트랜잭션 하나로 모아서 DB 에 반영한다.
+ * (StockService 로 재고를 빼고 stock_hold row 를 남긴다. 반납은 restock 후 row 삭제)
+ * DB 반영 중(FLUSHING)인 예약을 반납, 주문하려는 요청은 반영이 끝날 때까지 최대 FLUSH_WAIT_MS 기다린다.
+ *
+ * 예약 가능 수량은 상품별로 처음 예약할 때 DB 재고로 채우고, 이후 커밋된 주문/취소/재고변경 이벤트로 맞춘다.
+ * 기동시 stock_hold 로 반영된 예약을 복구한다. 반영 전에 죽은 예약은 DB 재고를 건드리지 않았으므로 그냥 사라진다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "jpashop.reservation", name = "enabled", havingValue = "true")
+public class StockLedger {
+    private static final long FLUSH_WAIT_MS = 5000;
+
+    private final StockLedgerWriter writer;
+    private final Duration holdTtl;
+    private final long tickMs;
+    private final long flushIntervalMs;
+    private final int stripes;
+
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final Map<Long, StripedStock> stocks = new ConcurrentHashMap<>();
+    private final Queue<Hold> writes = new ConcurrentLinkedQueue<>();
+    private final Queue<Hold> releases = new ConcurrentLinkedQueue<>();
+    //예약으로 만든 주문 (주문 이벤트로 예약 가능 수량을 또 빼지 않도록)
+    private final Set<Long> holdOrders = ConcurrentHashMap.newKeySet();
+    //DB 반영이 끝나면 notifyAll (FLUSHING 예약을 기다리는 요청)
+    private final Object flushMonitor = new Object();
+    private final TimingWheel<Hold> wheel;
+    //만료 처리와 DB 반영은 이 스레드 하나에서만 한다.
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "stock-ledger");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder held = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    public StockLedger(StockLedgerWriter writer,
+                       @Value("${jpashop.reservation.hold-ttl-seconds:600}") long holdTtlSeconds,
+                       @Value("${jpashop.reservation.tick-ms:100}") long tickMs,
+                       @Value("${jpashop.reservation.flush-interval-ms:50}") long flushIntervalMs,
+                       @Value("${jpashop.reservation.stripes:8}") int stripes) {
+        this.writer = writer;
+        this.holdTtl = Duration.ofSeconds(holdTtlSeconds);
+        this.tickMs = tickMs;
+        this.flushIntervalMs = flushIntervalMs;
+        this.stripes = stripes;
+        this.wheel = new TimingWheel<>(TimeUnit.MILLISECONDS.toNanos(tickMs), System.nanoTime());
+    }
+
+    @PostConstruct
+    public void start(){
+        background.scheduleWithFixedDelay(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        background.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 반영된 예약 복구. 그 사이 만료된 예약은 다음 tick 에 반납된다.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover(){
+        LocalDateTime now = LocalDateTime.now();
+        long nowNanos = System.nanoTime();
+        List<StockHold> stored = writer.findHolds();
+        for(StockHold row : stored){
+            long deadline = nowNanos + Math.max(0, Duration.between(now, row.getExpiresAt()).toNanos());
+            Hold hold = new Hold(row.getId(), row.getItemId(), row.getQuantity(), row.getExpiresAt(), deadline, HoldState.PERSISTED);
+            if(holds.putIfAbsent(hold.getId(), hold) == null){
+                wheel.schedule(hold, deadline);
+            }
+        }
+        log.info("stock ledger recovered {} holds", stored.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        background.shutdown();
+        background.awaitTermination(10, TimeUnit.SECONDS);
+        //아직 반영하지 않은 예약도 남겨서 재기동 후 복구되게 한다.
+        flush();
+    }
+
+    //==예약==//
+    public Hold hold(Long itemId, int quantity){
+        if(quantity < 1){
+            throw new IllegalArgumentException("예약 수량은 1 이상이어야 합니다.");
+        }
+        if(!stock(itemId).tryTake(quantity)){
+            throw new NotEnoughStockException("need more stock");
+        }
+        long deadline = System.nanoTime() + holdTtl.toNanos();
+        Hold hold = new Hold(UUID.randomUUID().toString(), itemId, quantity,
+                LocalDateTime.now().plus(holdTtl), deadline, HoldState.PENDING);
+        holds.put(hold.getId(), hold);
+        writes.add(hold);
+        wheel.schedule(hold, deadline);
+        held.increment();
+        return hold;
+    }
+
+    public Hold find(String holdId){
+        Hold hold = holds.get(holdId);
+        if(hold == null){
+            throw new IllegalStateException("만료되었거나 없는 예약입니다.");
+        }
+        return hold;
+    }
+
+    /**
+     * 구매자가 결제를 포기한 경우
+     */
+    public void release(String holdId){
+        Hold hold = find(holdId);
+        while(!releaseHold(hold)){
+            awaitFlushed(hold);
+        }
+        released.increment();
+    }
+
+    /**
+     * 주문 트랜잭션 안에서 예약을 주문으로 전환한다.
+     * 트랜잭션이 롤백되면 예약을 되살린다. (그 사이 만료 시각이 지났으면 다음 tick 에 반납)
+     * @return 전환 전 상태. PERSISTED 면 예약 수량이 이미 DB 재고에서 빠져 있다.
+     */
+    public HoldState consume(Hold hold){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            throw new IllegalStateException("예약 전환은 주문 트랜잭션 안에서 해야 합니다.");
+        }
+        HoldState previous;
+        while(true){
+            previous = hold.getState();
+            if(previous == HoldState.FLUSHING){
+                awaitFlushed(hold);
+                continue;
+            }
+            if(previous != HoldState.PENDING && previous != HoldState.PERSISTED){
+                throw new IllegalStateException("만료되었거나 없는 예약입니다.");
+            }
+            if(hold.transit(previous, HoldState.CONSUMED)){
+                break;
+            }
+        }
+        holds.remove(hold.getId());
+        HoldState restore = previous;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status == STATUS_COMMITTED){
+                    consumed.increment();
+                }else if(hold.transit(HoldState.CONSUMED, restore)){
+                    holds.put(hold.getId(), hold);
+                    if(restore == HoldState.PENDING){
+                        writes.add(hold);
+                    }
+                    wheel.schedule(hold, hold.getDeadlineNanos());
+                }
+            }
+        });
+        return previous;
+    }
+
+    /**
+     * 예약으로 만든 주문. 커밋 후 주문 이벤트가 오면 예약 가능 수량을 빼지 않고 지운다.
+     */
+    public void markHoldOrder(Long orderId){
+        holdOrders.add(orderId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if(status != STATUS_COMMITTED){
+                    holdOrders.remove(orderId);
+                }
+            }
+        });
+    }
+
+    /**
+     * 예약 가능 수량 (아직 예약된 적 없는 상품은 null)
+     */
+    public Integer available(Long itemId){
+        StripedStock stock = stocks.get(itemId);
+        return stock == null ? null : stock.sum();
+    }
+
+    //==커밋된 재고 변경 반영==//
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event){
+        if(holdOrders.remove(event.getOrderId())){
+            return;
+        }
+        for(OrderLine line : event.getLines()){
+            adjust(line.getItemId(), -line.getCount());
+        }
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event){
+        for(OrderLine line : event.getLines()){
+            adjust(line.getItemId(), line.getCount());
+        }
+    }
+
+    /**
+     * 주문, 취소는 주문 이벤트로, 예약 반영은 예약할 때 이미 맞췄으므로 상품 등록/수정만 반영한다.
+     */
+    @TransactionalEventListener
+    public void onStockChanged(StockChangedEvent event){
+        if(event.getCause() == StockChangedEvent.Cause.ITEM){
+            adjust(event.getItemId(), event.getDelta());
+        }
+    }
+
+    public Map<String, Object> stats(){
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("liveHolds", holds.size());
+        stats.put("scheduled", wheel.size());
+        stats.put("pendingWrites", writes.size());
+        stats.put("pendingReleases", releases.size());
+        stats.put("items", stocks.size());
+        stats.put("held", held.sum());
+        stats.put("consumed", consumed.sum());
+        stats.put("released", released.sum());
+        stats.put("expired", expired.sum());
+        stats.put("failed", failed.sum());
+        stats.put("flushed", flushed.sum());
+        return stats;
+    }
+
+    private StripedStock stock(Long itemId){
+        StripedStock stock = stocks.get(itemId);
+        if(stock == null){
+            writer.loadAvailable(itemId, quantity -> stocks.putIfAbsent(itemId, new StripedStock(stripes, quantity)));
+            stock = stocks.get(itemId);
+        }
+        return stock;
+    }
+
+    /**
+     * 요청 스레드에서만 호출한다. (반영은 background 스레드가 하므로 거기서 기다리면 끝나지 않는다)
+     */
+    private void awaitFlushed(Hold hold){
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_WAIT_MS);
+        synchronized (flushMonitor){
+            while(hold.getState() == HoldState.FLUSHING){
+                long remaining = deadline - System.nanoTime();
+                if(remaining <= 0){
+                    throw new IllegalStateException("예약을 반영하는 중입니다. 잠시 후 다시 시도하세요.");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(flushMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("예약 반영을 기다리다 중단되었습니다.", e);
+                }
+            }
+        }
+    }
+
+    private void adjust(Long itemId, int delta){
+        StripedStock stock = stocks.get(itemId);
+        if(stock != null){
+            stock.add(delta);
+        }
+    }
+
+    /**
+     * @return false = DB 반영중이라 지금은 반납할 수 없음
+     */
+    private boolean releaseHold(Hold hold){
+        while(true){
+            HoldState state = hold.getState();
+            if(state == HoldState.FLUSHING){
+                return false;
+            }
+            if(state != HoldState.PENDING && state != HoldState.PERSISTED){
+                throw new IllegalStateException("만료되었거나 없는 예약입니다.");
+            }
+            if(hold.transit(state, HoldState.RELEASED)){
+                holds.remove(hold.getId());
+                adjust(hold.getItemId(), hold.getQuantity());
+                if(state == HoldState.PERSISTED){
+                    releases.add(hold);
+                }
+                return true;
+            }
+        }
+    }
+
+    //==만료, DB 반영 (background 스레드)==//
+    private void tick(){
+        try {
+            wheel.advance(System.nanoTime(), this::expire);
+        } catch (RuntimeException e) {
+            log.warn("stock ledger tick failed", e);
+        }
+    }
+
+    private void expire(Hold hold){
+        HoldState state = hold.getState();
+        if(state != HoldState.PENDING && state != HoldState.PERSISTED && state != HoldState.FLUSHING){
+            return;
+        }
+        if(hold.getDeadlineNanos() - System.nanoTime() > 0){
+            //롤백으로 되살아난 예약이 이전 등록으로 먼저 불린 경우
+            return;
+        }
+        try {
+            if(releaseHold(hold)){
+                expired.increment();
+            }else{
+                wheel.schedule(hold, System.nanoTime());
+            }
+        } catch (IllegalStateException e) {
+            //그 사이 주문으로 전환되었거나 반납됨
+        }
+    }
+
+    /**
+     * 새 예약을 먼저 꺼내고 반납을 나중에 꺼낸다.
+     * 반납으로 생긴 수량을 가져간 예약이 꺼내졌다면 그 반납도 반드시 같이 꺼내진다.
+     */
+    private synchronized void flush(){
+        List<Hold> newHolds = new ArrayList<>();
+        Hold hold;
+        while((hold = writes.poll()) != null){
+            if(hold.transit(HoldState.PENDING, HoldState.FLUSHING)){
+                newHolds.add(hold);
+            }
+        }
+        List<Hold> newReleases = new ArrayList<>();
+        while((hold = releases.poll()) != null){
+            newReleases.add(hold);
+        }
+        if(newHolds.isEmpty() && newReleases.isEmpty()){
+            return;
+        }
+
+        Map<Long, List<Hold>> holdsByItem = newHolds.stream().collect(groupingBy(Hold::getItemId));
+        Map<Long, List<Hold>> releasesByItem = newReleases.stream().collect(groupingBy(Hold::getItemId));
+        Set<Long> itemIds = new HashSet<>(holdsByItem.keySet());
+        itemIds.addAll(releasesByItem.keySet());
+        for(Long itemId : itemIds){
+            write(itemId, holdsByItem.getOrDefault(itemId, List.of()), releasesByItem.getOrDefault(itemId, List.of()));
+            synchronized (flushMonitor){
+                flushMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void write(Long itemId, List<Hold> itemHolds, List<Hold> itemReleases){
+        try {
+            writer.write(itemId, itemHolds, itemReleases);
+            itemHolds.forEach(h -> h.transit(HoldState.FLUSHING, HoldState.PERSISTED));
+            flushed.add(itemHolds.size() + itemReleases.size());
+        } catch (NotEnoughStockException e) {
+            //원장 밖에서 DB 재고가 줄었다. 이번 예약은 실패시키고 예약 가능 수량은 DB 에서 다시 읽는다.
+            log.warn("stock hold write-through failed itemId={} holds={}", itemId, itemHolds.size());
+            for(Hold h : itemHolds){
+                if(h.transit(HoldState.FLUSHING, HoldState.FAILED)){
+                    holds.remove(h.getId());
+                    failed.increment();
+                }
+            }
+            stocks.remove(itemId);
+            if(!itemReleases.isEmpty()){
+                write(itemId, List.of(), itemReleases);
+            }
+        } catch (RuntimeException e) {
+            log.warn("stock hold write-through deferred itemId={}", itemId, e);
+            for(Hold h : itemHolds){
+                if(h.transit(HoldState.FLUSHING, HoldState.PENDING)){
+                    writes.add(h);
+                }
+            }
+            releases.addAll(itemReleases);
+        }
+    }
+}
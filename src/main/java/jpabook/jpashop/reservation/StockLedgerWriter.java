@@ -0,0 +1,73 @@
+package jpabook.jpashop.reservation;
+
+import jpabook.jpashop.domain.StockHold;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.StockHoldRepository;
+import jpabook.jpashop.repository.StockShardRepository;
+import jpabook.jpashop.service.StockService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * 예약 원장의 DB 반영 (상품별 트랜잭션 하나)
+ * 상품 row 를 잠그고 반납분을 먼저 더한 뒤 새 예약분을 뺀다. 재고가 모자라면 전체가 롤백된다.
+ * 재고 증감은 주문과 같은 StockService 를 거치므로 분할 재고 상품도 분할 row 에서 차감, 복구된다.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StockLedgerWriter {
+    private final ItemRepository itemRepository;
+    private final StockHoldRepository stockHoldRepository;
+    private final StockShardRepository stockShardRepository;
+    private final StockService stockService;
+
+    @Transactional
+    public void write(Long itemId, List<Hold> holds, List<Hold> releases){
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if(!releases.isEmpty()){
+            stockService.restock(itemId, releases.stream().mapToInt(Hold::getQuantity).sum());
+            stockHoldRepository.deleteAll(releases.stream().map(Hold::getId).collect(toList()));
+        }
+        if(!holds.isEmpty()){
+            int quantity = holds.stream().mapToInt(Hold::getQuantity).sum();
+            if(item.isShardedStock()){
+                stockService.takeShardedStock(item, quantity);
+            }else{
+                stockService.takeStock(item, quantity);
+            }
+            for(Hold hold : holds){
+                stockHoldRepository.save(StockHold.create(hold.getId(), itemId, hold.getQuantity(), hold.getExpiresAt()));
+            }
+        }
+    }
+
+    /**
+     * 예약 가능 수량 = DB 재고 (반영된 예약은 이미 빠져 있다). 분할 재고 상품은 상품 row + 분할 row 합계
+     * 상품 row (분할 재고면 분할 row 도) 를 잠근 채로 install 을 호출하므로, 읽은 뒤 커밋되는 주문의 이벤트는 반드시 설치 이후에 도착한다.
+     */
+    @Transactional
+    public void loadAvailable(Long itemId, IntConsumer install){
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if(item == null){
+            throw new IllegalArgumentException("상품이 없습니다. itemId=" + itemId);
+        }
+        int available = item.getStockQuantity();
+        if(item.isShardedStock()){
+            stockShardRepository.lockAll(itemId);
+            available += stockShardRepository.findQuantities(itemId).stream().mapToInt(Integer::intValue).sum();
+        }
+        install.accept(available);
+    }
+
+    public List<StockHold> findHolds(){
+        return stockHoldRepository.findAll();
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.reservation;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 상품 하나의 예약 가능 수량을 여러 칸(stripe)에 나눠 담은 카운터
+ *
+ * 예약은 임의의 칸 하나를 CAS 로 차감하므로 같은 상품의 예약끼리 같은 값을 두고 다투지 않는다.
+ * 한 칸으로 부족하면 여러 칸에서 조금씩 모으고, 그래도 모자라면 모은 만큼 되돌리고 실패한다.
+ * 칸 값은 외부 재고변경(add 음수) 때문에 음수가 될 수 있다. 합계가 정확한 예약 가능 수량이다.
+ */
+public class StripedStock {
+    private final AtomicIntegerArray stripes;
+
+    public StripedStock(int stripeCount, int quantity) {
+        stripes = new AtomicIntegerArray(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.set(i, quantity / stripeCount + (i < quantity % stripeCount ? 1 : 0));
+        }
+    }
+
+    public boolean tryTake(int quantity) {
+        int length = stripes.length();
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            int index = (start + i) % length;
+            int value;
+            while ((value = stripes.get(index)) >= quantity) {
+                if (stripes.compareAndSet(index, value, value - quantity)) {
+                    return true;
+                }
+            }
+        }
+        return gather(start, quantity);
+    }
+
+    public void add(int quantity) {
+        stripes.addAndGet(ThreadLocalRandom.current().nextInt(stripes.length()), quantity);
+    }
+
+    public int sum() {
+        int sum = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            sum += stripes.get(i);
+        }
+        return sum;
+    }
+
+    private boolean gather(int start, int quantity) {
+        int length = stripes.length();
+        int[] taken = new int[length];
+        int need = quantity;
+        for (int i = 0; i < length && need > 0; i++) {
+            int index = (start + i) % length;
+            int value;
+            while ((value = stripes.get(index)) > 0) {
+                int take = Math.min(value, need);
+                if (stripes.compareAndSet(index, value, value - take)) {
+                    taken[index] = take;
+                    need -= take;
+                    break;
+                }
+            }
+        }
+        if (need == 0) {
+            return true;
+        }
+        for (int index = 0; index < length; index++) {
+            if (taken[index] > 0) {
+                stripes.addAndGet(index, taken[index]);
+            }
+        }
+        return false;
+    }
+}
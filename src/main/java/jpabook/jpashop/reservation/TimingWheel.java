@@ -0,0 +1,131 @@
+package jpabook.jpashop.reservation;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * 계층 타이밍 휠 (hierarchical timing wheel)
+ *
+ * 단계마다 64칸이고, 한 칸의 폭은 아래 단계 한 바퀴다. (tick 100ms 면 6.4초, 6.8분, 7.3시간, 19.4일)
+ * 등록은 대기열에 넣기만 하고(O(1)), 칸 배치와 만료는 advance 를 호출하는 스레드 하나가 한다.
+ * 아래 단계가 한 바퀴 돌 때마다 위 단계 한 칸을 꺼내 남은 시간에 맞는 칸으로 다시 내린다.
+ * 그래서 tick 마다 하는 일은 살아있는 항목 수가 아니라 그 칸의 항목 수에 비례한다.
+ *
+ * 취소는 지원하지 않는다. 만료 콜백에서 이미 끝난 항목인지 확인한다.
+ */
+public class TimingWheel<T> {
+    private static final int WHEEL_BITS = 6;
+    private static final int SLOTS = 1 << WHEEL_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Queue<Node<T>> pending = new ConcurrentLinkedQueue<>();
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Node<T>>[][] wheels = new ArrayDeque[LEVELS][SLOTS];
+    private final ArrayDeque<Node<T>> overflow = new ArrayDeque<>();
+
+    //advance 스레드만 쓴다.
+    private long currentTick;
+    private volatile int size;
+
+    public TimingWheel(long tickNanos, long startNanos) {
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = new ArrayDeque<>();
+            }
+        }
+    }
+
+    /**
+     * 아무 스레드에서나 호출할 수 있다.
+     * @param deadlineNanos System.nanoTime 기준 만료 시각
+     */
+    public void schedule(T value, long deadlineNanos) {
+        long ticks = Math.max(0, deadlineNanos - startNanos);
+        pending.add(new Node<>(value, (ticks + tickNanos - 1) / tickNanos));
+    }
+
+    /**
+     * nowNanos 까지 tick 을 진행하며 만료된 항목을 expired 로 넘긴다. (한 스레드에서만 호출)
+     */
+    public void advance(long nowNanos, Consumer<T> expired) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        drainPending();
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            ArrayDeque<Node<T>> slot = wheels[0][(int) (currentTick & MASK)];
+            Node<T> node;
+            while ((node = slot.poll()) != null) {
+                size--;
+                expired.accept(node.value);
+            }
+        }
+    }
+
+    /**
+     * 대기열 포함 등록된 항목 수 (근사값)
+     */
+    public int size() {
+        return size + pending.size();
+    }
+
+    private void drainPending() {
+        Node<T> node;
+        while ((node = pending.poll()) != null) {
+            size++;
+            place(node, currentTick + 1);
+        }
+    }
+
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            ArrayDeque<Node<T>> slot = wheels[level][(int) ((currentTick >>> (WHEEL_BITS * level)) & MASK)];
+            Node<T> node;
+            while ((node = slot.poll()) != null) {
+                place(node, currentTick);
+            }
+        }
+        if ((currentTick & ((1L << (WHEEL_BITS * LEVELS)) - 1)) == 0) {
+            int count = overflow.size();
+            for (int i = 0; i < count; i++) {
+                place(overflow.poll(), currentTick);
+            }
+        }
+    }
+
+    /**
+     * 남은 tick 이 들어가는 가장 낮은 단계의 칸에 넣는다. 이미 지난 항목은 minTick 칸에 넣는다.
+     * (대기열에서 올 때는 다음 tick, 위 단계에서 내려올 때는 지금 처리할 tick)
+     */
+    private void place(Node<T> node, long minTick) {
+        long deadlineTick = Math.max(node.deadlineTick, minTick);
+        long remaining = deadlineTick - currentTick;
+        for (int level = 0; level < LEVELS; level++) {
+            if (remaining < (1L << (WHEEL_BITS * (level + 1)))) {
+                wheels[level][(int) ((deadlineTick >>> (WHEEL_BITS * level)) & MASK)].add(node);
+                return;
+            }
+        }
+        overflow.add(node);
+    }
+
+    private static class Node<T> {
+        private final T value;
+        private final long deadlineTick;
+
+        Node(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
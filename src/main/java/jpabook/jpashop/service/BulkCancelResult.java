@@ -0,0 +1,16 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 주문 일괄취소 결과
+ */
+@Getter
+@AllArgsConstructor
+public class BulkCancelResult {
+    private int requested;
+    private int cancelled;
+    /** 이미 배송완료되어 건너뛴 주문 수 */
+    private int skippedDelivered;
+}
@@ -0,0 +1,111 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.repository.OrderChangeRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 주문 변경 피드
+ *
+ * seq 는 insert 할 때 정해지고 커밋 순서와 다를 수 있다. 앞 번호가 늦게 커밋되면 cursor 가 그 번호를 건너뛴다.
+ * 그래서 cursor 다음에 빠진 번호(gap)가 있으면 그 앞까지만 응답한다.
+ * 빠진 번호는 아직 커밋되지 않은 변경이거나 롤백된 insert 다. 롤백된 번호는 다시 나타나지 않으므로
+ * 처음 조회에서 발견된 뒤 gap-timeout-ms 가 지나면 건너뛴다. (기록 시각이 아니라 조회 시각 기준)
+ * 즉 변경을 기록한 트랜잭션이 gap-timeout-ms 안에 커밋된다고 본다.
+ * 그래서 변경을 기록하는 트랜잭션은 WRITE_TIMEOUT(write-timeout-seconds) 을 걸어 그보다 오래 걸리면 롤백되게 한다.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class ChangeFeedService {
+    private static final int MAX_GAPS = 10_000;
+    /**
+     * 주문 변경을 기록하는 쓰기 트랜잭션의 timeout(초). gap-timeout-ms 보다 짧아야 한다.
+     */
+    public static final String WRITE_TIMEOUT = "${jpashop.change-feed.write-timeout-seconds:5}";
+
+    private final OrderChangeRepository orderChangeRepository;
+    private final long gapTimeoutNanos;
+    private final int retentionDays;
+    //빠진 번호의 시작 seq > 처음 발견한 시각(nanoTime)
+    private final Map<Long, Long> gaps = new ConcurrentHashMap<>();
+
+    public ChangeFeedService(OrderChangeRepository orderChangeRepository,
+                             @Value("${jpashop.change-feed.gap-timeout-ms:10000}") long gapTimeoutMs,
+                             @Value("${jpashop.change-feed.retention-days:7}") int retentionDays,
+                             @Value(WRITE_TIMEOUT) int writeTimeoutSeconds) {
+        this.orderChangeRepository = orderChangeRepository;
+        this.gapTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(gapTimeoutMs);
+        this.retentionDays = retentionDays;
+        if(gapTimeoutMs <= TimeUnit.SECONDS.toMillis(writeTimeoutSeconds)){
+            log.warn("change-feed gap-timeout-ms({}) is not longer than write-timeout-seconds({}), late commits can be skipped",
+                    gapTimeoutMs, writeTimeoutSeconds);
+        }
+    }
+
+    public ChangeBatch findChanges(long cursor, int limit){
+        List<OrderChange> found = orderChangeRepository.findAfter(cursor, limit);
+        long now = System.nanoTime();
+        List<OrderChange> visible = new ArrayList<>();
+        long expected = cursor + 1;
+        for(OrderChange change : found){
+            if(change.getSeq() != expected && !gapExpired(expected, now)){
+                break;
+            }
+            visible.add(change);
+            expected = change.getSeq() + 1;
+        }
+        if(gaps.size() > MAX_GAPS){
+            gaps.values().removeIf(firstSeen -> now - firstSeen > gapTimeoutNanos * 10);
+        }
+        long next = visible.isEmpty() ? cursor : visible.get(visible.size() - 1).getSeq();
+        boolean hasMore = found.size() == limit || visible.size() < found.size();
+        return new ChangeBatch(visible, next, hasMore);
+    }
+
+    /**
+     * @param seq 빠진 번호의 시작
+     */
+    private boolean gapExpired(long seq, long now){
+        long firstSeen = gaps.computeIfAbsent(seq, s -> now);
+        return now - firstSeen >= gapTimeoutNanos;
+    }
+
+    /**
+     * 지금까지 기록된 마지막 seq (이후 변경만 받으려는 소비자의 시작 cursor)
+     */
+    public long latestCursor(){
+        return orderChangeRepository.findLastSeq();
+    }
+
+    /**
+     * 보관 기간이 지난 변경 삭제 (소비자는 그 안에 따라와야 한다)
+     */
+    @Transactional
+    @Scheduled(cron = "${jpashop.change-feed.purge-cron:0 30 3 * * *}")
+    public void purge(){
+        int deleted = orderChangeRepository.deleteBefore(LocalDateTime.now().minusDays(retentionDays));
+        log.info("order changes purged {}", deleted);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ChangeBatch {
+        private final List<OrderChange> changes;
+        private final long nextCursor;
+        private final boolean hasMore;
+    }
+}
@@ -0,0 +1,46 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.repository.DeliveryRepository;
+import jpabook.jpashop.repository.OrderChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class DeliveryService {
+    private final DeliveryRepository deliveryRepository;
+    private final OrderChangeRepository orderChangeRepository;
+
+    /**
+     * 배송완료
+     * READY 상태인 배송만 COMP 로 변경한다. 이미 취소된 주문의 배송은 변경되지 않는다.
+     * @return 배송완료 처리 여부
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
+    public boolean completeDelivery(Long deliveryId){
+        if(deliveryRepository.updateStatus(deliveryId, DeliveryStatus.READY, DeliveryStatus.COMP) == 0){
+            return false;
+        }
+        orderChangeRepository.insertDelivered(List.of(deliveryId));
+        return true;
+    }
+
+    /**
+     * 배송 일괄완료
+     * 호출 1번이 짧은 트랜잭션 1개이므로 큰 파일은 청크로 나눠서 호출한다.
+     * @return 배송완료 처리된 수
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
+    public int completeDeliveries(List<Long> deliveryIds){
+        int completed = deliveryRepository.completeAll(deliveryIds);
+        if(completed > 0){
+            orderChangeRepository.insertDelivered(deliveryIds);
+        }
+        return completed;
+    }
+}
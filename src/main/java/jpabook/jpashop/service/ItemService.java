@@ -1,8 +1,12 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.event.StockChangedEvent;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.item.query.ItemQueryDto;
+import jpabook.jpashop.repository.item.query.ItemQueryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,15 +17,21 @@ import java.util.List;
 @Transactional(readOnly = true)
 public class ItemService {
     private final ItemRepository itemRepository;
+    private final ItemQueryRepository itemQueryRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public void saveItem(Item item){
+        int before = item.getId() == null ? 0 : findExisting(item.getId()).getStockQuantity();
         itemRepository.save(item);
+        if(item.getStockQuantity() != before){
+            eventPublisher.publishEvent(new StockChangedEvent(item.getId(), item.getStockQuantity() - before, StockChangedEvent.Cause.ITEM));
+        }
     }
 
     @Transactional
     public void updateItem(Long id, String name, int price){
-        Item item = itemRepository.findOne(id);
+        Item item = findExisting(id);
         item.setName(name);
         item.setPrice(price);
     }
@@ -30,7 +40,19 @@ public class ItemService {
         return itemRepository.findAll();
     }
 
+    public List<ItemQueryDto> findItemViews(){
+        return itemQueryRepository.findItemDtos();
+    }
+
     public Item findOne(Long itemId){
         return itemRepository.findOne(itemId);
     }
+
+    private Item findExisting(Long itemId){
+        Item item = itemRepository.findOne(itemId);
+        if(item == null){
+            throw new IllegalArgumentException("존재하지 않는 상품입니다. id=" + itemId);
+        }
+        return item;
+    }
 }
@@ -0,0 +1,37 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.member.query.MemberQueryRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 전체 회원수 캐시
+ *
+ * 모든 빈 생성이 끝나고 웹서버가 요청을 받기 전에 count 쿼리 1번으로 초기화하고, 이후에는 회원가입 커밋마다 1씩 증가시킨다.
+ * 초기화 중에 커밋되는 회원가입이 없으므로 빠지거나 두 번 세어지는 회원이 없다. (지연 초기화 모드에서도 먼저 만들어지도록 @Lazy(false))
+ * 회원 삭제 기능이 없으므로 증가만 처리한다.
+ */
+@Component
+@Lazy(false)
+@RequiredArgsConstructor
+public class MemberCounter implements SmartInitializingSingleton {
+    private final MemberQueryRepository memberQueryRepository;
+    private final AtomicLong count = new AtomicLong();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        count.set(memberQueryRepository.countMembers());
+    }
+
+    public long get(){
+        return count.get();
+    }
+
+    public void increment(){
+        count.incrementAndGet();
+    }
+}
@@ -1,10 +1,18 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.MemberOrderStats;
+import jpabook.jpashop.event.MemberRenamedEvent;
+import jpabook.jpashop.repository.MemberOrderStatsRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.member.query.MemberQueryRepository;
+import jpabook.jpashop.repository.member.query.MemberViewDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.List;
 
@@ -13,11 +21,23 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MemberService {
     private final MemberRepository memberRepository;
+    private final MemberQueryRepository memberQueryRepository;
+    private final MemberOrderStatsRepository memberOrderStatsRepository;
+    private final MemberCounter memberCounter;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Transactional
     public Long join(Member member){
         validateDuplicateMember(member);
         memberRepository.save(member);
+        eventPublisher.publishEvent(new MemberRenamedEvent(member.getId(), member.getName()));
+        //커밋된 경우에만 회원수 증가
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                memberCounter.increment();
+            }
+        });
         return member.getId();
     }
 
@@ -36,6 +56,17 @@ public class MemberService {
         return memberRepository.findAll();
     }
 
+    public List<MemberViewDto> findMemberViews(){
+        return memberQueryRepository.findMemberViews();
+    }
+
+    /**
+     * 회원 주문 통계 (회원의 주문 목록을 읽지 않는다)
+     */
+    public MemberOrderStats findOrderStats(Long memberId){
+        return memberOrderStatsRepository.findOrCompute(memberId);
+    }
+
     public List<Member> findByName(String name){
         return memberRepository.findByName(name);
     }
@@ -44,5 +75,6 @@ public class MemberService {
     public void update(Long id, String name){
         Member findMember = memberRepository.findOne(id);
         findMember.setName(name);
+        eventPublisher.publishEvent(new MemberRenamedEvent(id, name));
     }
 }
@@ -0,0 +1,60 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.repository.archive.OrderArchiveRepository;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class OrderArchiveService {
+    private final OrderArchiveRepository orderArchiveRepository;
+    private final OrderQueryRepository orderQueryRepository;
+
+    /**
+     * horizon 이전에 끝난 주문을 batchSize 만큼 보관 테이블로 옮긴다.
+     * 배치 1번이 트랜잭션 1개
+     * @return 보관된 주문 수 (0이면 더 이상 대상 없음)
+     */
+    @Transactional
+    public int archiveBatch(LocalDateTime horizon, int batchSize){
+        List<Long> orderIds = orderArchiveRepository.findArchivableIds(horizon, batchSize);
+        if(orderIds.isEmpty()){
+            return 0;
+        }
+        return orderArchiveRepository.moveToArchive(orderIds);
+    }
+
+    /**
+     * 운영 테이블 row 수와 주문 조회 API(v6 플랫 조회) 조인의 count 쿼리 시간
+     */
+    public HotTableStats hotTableStats(){
+        long start = System.nanoTime();
+        long scanned = orderQueryRepository.countFlatRows();
+        long scanMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new HotTableStats(
+                orderArchiveRepository.countRows("orders"),
+                orderArchiveRepository.countRows("order_item"),
+                orderArchiveRepository.countRows("delivery"),
+                scanned, scanMillis);
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class HotTableStats {
+        private final long orders;
+        private final long orderItems;
+        private final long deliveries;
+        private final long scannedRows;
+        private final long scanMillis;
+    }
+}
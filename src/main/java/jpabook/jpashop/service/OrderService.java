@@ -2,25 +2,65 @@ package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.OrderPlacedEvent;
+import jpabook.jpashop.repository.DeliveryRepository;
 import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberOrderStatsRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderChangeRepository;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.query.MemberOrderHistoryDto;
+import jpabook.jpashop.repository.order.query.OrderLineQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.query.OrderViewDto;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.*;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class OrderService {
+    private static final int BULK_CHUNK_SIZE = 1000;
+    /**
+     * 일괄취소 1번의 최대 주문 수 (트랜잭션이 변경 피드 쓰기 timeout 안에 끝나도록)
+     */
+    public static final int MAX_BULK_CANCEL = 5000;
+
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final DeliveryRepository deliveryRepository;
+    private final OrderQueryRepository orderQueryRepository;
+    private final OrderChangeRepository orderChangeRepository;
+    private final MemberOrderStatsRepository memberOrderStatsRepository;
+    private final StockService stockService;
+    private final StockAvailability stockAvailability;
+    private final ApplicationEventPublisher eventPublisher;
 
-    @Transactional
+    /**
+     * 품절이 확실한 주문은 SoldOutGuard 가 트랜잭션을 열기 전에 거절한다.
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
     public Long order(Long memberId, Long itemId, int count){
+        return order(memberId, itemId, count, false);
+    }
+
+    /**
+     * @param reservedStock true = 예약(StockLedger)으로 이미 DB 재고에서 빠져 있는 수량. 다시 차감하지 않는다.
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
+    public Long order(Long memberId, Long itemId, int count, boolean reservedStock){
         Member member = memberRepository.findOne(memberId);
         Item item = itemRepository.findOne(itemId);
 
@@ -28,21 +68,120 @@ public class OrderService {
         delivery.setAddress(member.getAddress());
         delivery.setStatus(DeliveryStatus.READY);
 
+        //예약 주문은 예약할 때 이미 차감했다.
+        if(!reservedStock && item.isShardedStock()){
+            stockService.takeShardedStock(item, count);
+        }else if(!reservedStock){
+            stockService.takeStock(item, count);
+        }
         OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        if(!item.isShardedStock()){
+            stockAvailability.recordStock(itemId, item.getStockQuantity());
+        }
 
         Order order = Order.createOrder(member, delivery, orderItem);
         orderRepository.save(order);
+        orderChangeRepository.save(OrderChange.create(order.getId(), memberId, OrderChangeType.CREATED));
+        memberOrderStatsRepository.addOrder(memberId, orderItem.getTotalPrice(), order.getOrderDate());
+        eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(), memberId, order.getOrderDate(),
+                List.of(new OrderLine(itemId, orderItem.getOrderPrice(), count))));
         return order.getId();
     }
 
-    @Transactional
+    /**
+     * 주문취소
+     *
+     * 배송상태 READY -> CANCEL 조건부 update 가 성공한 경우에만 주문상태 변경과 재고복구를 한다.
+     * 배송완료 처리도 같은 배송 row 를 조건부 update 하므로 row lock 으로 직렬화 되어 둘 중 하나만 성공한다.
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
     public void cancelOrder(Long orderId){
-        Order order = orderRepository.findOne(orderId);
-        order.cancel();
+        if(cancel(List.of(orderId)).getCancelled() == 0){
+            throw new IllegalStateException("이미 배송완료되었거나 취소된 주문입니다.");
+        }
+    }
+
+    /**
+     * 주문 일괄취소
+     *
+     * 주문별로 엔티티를 읽지 않고 IN 절 update 로 상태를 변경하고,
+     * 재고는 상품별 수량 합계를 구해 상품당 update 1번으로 복구한다.
+     * 이미 배송완료되었거나 취소된 주문은 건너뛴다.
+     * 한 트랜잭션으로 처리하므로 MAX_BULK_CANCEL 건까지만 받는다.
+     */
+    @Transactional(timeoutString = ChangeFeedService.WRITE_TIMEOUT)
+    public BulkCancelResult cancelOrders(List<Long> orderIds){
+        if(orderIds.size() > MAX_BULK_CANCEL){
+            throw new IllegalArgumentException("일괄취소는 한번에 " + MAX_BULK_CANCEL + "건까지 가능합니다. size=" + orderIds.size());
+        }
+        int cancelled = 0;
+        int delivered = 0;
+        List<Long> distinctIds = orderIds.stream().distinct().collect(toList());
+        for(int from = 0; from < distinctIds.size(); from += BULK_CHUNK_SIZE){
+            List<Long> chunk = distinctIds.subList(from, Math.min(from + BULK_CHUNK_SIZE, distinctIds.size()));
+            BulkCancelResult result = cancel(chunk);
+            cancelled += result.getCancelled();
+            delivered += result.getSkippedDelivered();
+        }
+        return new BulkCancelResult(distinctIds.size(), cancelled, delivered);
+    }
+
+    private BulkCancelResult cancel(List<Long> orderIds){
+        if(deliveryRepository.cancelByOrderIds(orderIds) == 0){
+            return new BulkCancelResult(orderIds.size(), 0,
+                    (int) orderRepository.countByDeliveryStatus(orderIds, DeliveryStatus.COMP));
+        }
+        //배송만 CANCEL 이고 주문은 ORDER 인 상태는 이 트랜잭션 안에서만 보인다 = 방금 취소한 주문
+        List<Long> cancelledIds = orderRepository.findIdsByStatus(orderIds, OrderStatus.ORDER, DeliveryStatus.CANCEL);
+        List<OrderLineQueryDto> lines = orderRepository.findOrderLines(cancelledIds);
+        orderRepository.updateStatus(cancelledIds, OrderStatus.ORDER, OrderStatus.CANCEL);
+        if(!cancelledIds.isEmpty()){
+            orderChangeRepository.insertCancelled(cancelledIds);
+        }
+        lines.stream().collect(groupingBy(OrderLineQueryDto::getMemberId)).forEach((memberId, memberLines) ->
+                memberOrderStatsRepository.cancelOrders(memberId,
+                        memberLines.stream().map(OrderLineQueryDto::getOrderId).distinct().count(),
+                        memberLines.stream().mapToLong(l -> (long) l.getOrderPrice() * l.getCount()).sum()));
+
+        //상품별 수량 합계로 상품당 update 1번
+        Map<Long, Integer> restockCounts = lines.stream()
+                .collect(groupingBy(OrderLineQueryDto::getItemId, summingInt(OrderLineQueryDto::getCount)));
+        restockCounts.forEach(stockService::restock);
+
+        publishCancelled(lines);
+        return new BulkCancelResult(orderIds.size(), cancelledIds.size(),
+                (int) orderRepository.countByDeliveryStatus(orderIds, DeliveryStatus.COMP));
+    }
+
+    private void publishCancelled(List<OrderLineQueryDto> lines){
+        Map<Long, List<OrderLineQueryDto>> linesByOrder = lines.stream()
+                .collect(groupingBy(OrderLineQueryDto::getOrderId, LinkedHashMap::new, toList()));
+        linesByOrder.forEach((orderId, orderLines) -> {
+            OrderLineQueryDto first = orderLines.get(0);
+            eventPublisher.publishEvent(new OrderCancelledEvent(orderId, first.getMemberId(), first.getOrderDate(),
+                    orderLines.stream()
+                            .map(l -> new OrderLine(l.getItemId(), l.getOrderPrice(), l.getCount()))
+                            .collect(toList())));
+        });
     }
 
     /*주문검색*/
     public List<Order> findOrders(OrderSearch orderSearch){
         return orderRepository.findAll(orderSearch);
     }
+
+    public List<OrderViewDto> findOrderViews(OrderSearch orderSearch){
+        return orderQueryRepository.findOrderViews(orderSearch);
+    }
+
+    public List<OrderViewDto> findOrderViews(OrderSearch orderSearch, Long lastId, int limit){
+        return orderQueryRepository.findOrderViews(orderSearch, lastId, limit);
+    }
+
+    /**
+     * 회원 주문내역 (최근 주문부터 keyset 페이징)
+     */
+    public List<MemberOrderHistoryDto> findMemberOrderHistory(Long memberId, LocalDateTime lastOrderDate, Long lastId, int limit){
+        return orderQueryRepository.findMemberOrderHistory(memberId, lastOrderDate, lastId, limit);
+    }
 }
@@ -0,0 +1,50 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.exception.SoldOutException;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 품절 빠른 거절
+ *
+ * 트랜잭션 advice 보다 바깥에서 실행되므로 재고가 모자란 것이 확실한 주문은 트랜잭션을 열지 않고,
+ * 회원/상품을 읽지도 않고 SoldOutException 으로 거절한다.
+ * 예약(StockLedger)으로 잡아둔 재고로 하는 주문은 검사하지 않는다.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RequiredArgsConstructor
+public class SoldOutGuard {
+    private final StockAvailability stockAvailability;
+
+    @Around("execution(public Long jpabook.jpashop.service.OrderService.order(Long, Long, int, ..))")
+    public Object guard(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object[] args = joinPoint.getArgs();
+        Long itemId = (Long) args[1];
+        int count = (int) args[2];
+        boolean reservedStock = args.length > 3 && (boolean) args[3];
+        if(reservedStock){
+            return joinPoint.proceed();
+        }
+        if(stockAvailability.isShort(itemId, count)){
+            throw SoldOutException.INSTANCE;
+        }
+        try {
+            return joinPoint.proceed();
+        } catch (NotEnoughStockException e) {
+            //바깥 트랜잭션이 있으면 그 트랜잭션의 커밋 전 변경 때문일 수 있다.
+            if(e != SoldOutException.INSTANCE && !TransactionSynchronizationManager.isActualTransactionActive()){
+                stockAvailability.recordShort(itemId, count);
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.event.StockChangedEvent;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 품절/재고 부족 상품 목록 (메모리)
+ *
+ * 재고가 low-stock-threshold 이하인 상품만 재고 상한값을 들고 있다. 상한보다 많이 주문하면 DB 를 보지 않고 거절한다.
+ * 상한은 주문 커밋 후 남은 재고, 재고 부족으로 실패한 주문 수량으로 정하고 취소/재고변경 이벤트만큼 올린다.
+ * 커밋 후에 반영하므로 재고가 늘어난 직후 잠깐 실제보다 낮을 수 있다. 그래서 항목은 ttl-ms 가 지나면 버린다.
+ */
+@Component
+public class StockAvailability {
+    private final int lowStockThreshold;
+    private final long ttlNanos;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder rejected = new LongAdder();
+
+    @Getter @Setter
+    private volatile boolean enabled;
+
+    public StockAvailability(@Value("${jpashop.availability.enabled:true}") boolean enabled,
+                             @Value("${jpashop.availability.low-stock-threshold:10}") int lowStockThreshold,
+                             @Value("${jpashop.availability.ttl-ms:2000}") long ttlMs) {
+        this.enabled = enabled;
+        this.lowStockThreshold = lowStockThreshold;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    /**
+     * @return true = 재고가 count 보다 적은 것이 확실함
+     */
+    public boolean isShort(Long itemId, int count){
+        if(!enabled){
+            return false;
+        }
+        Entry entry = entries.get(itemId);
+        if(entry == null){
+            return false;
+        }
+        if(entry.expiresAt - System.nanoTime() < 0){
+            entries.remove(itemId, entry);
+            return false;
+        }
+        if(entry.upperBound < count){
+            rejected.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 주문 후 남은 재고. 트랜잭션 안이면 커밋 후에 반영한다.
+     */
+    public void recordStock(Long itemId, int stock){
+        if(!TransactionSynchronizationManager.isSynchronizationActive()){
+            put(itemId, stock);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(itemId, stock);
+            }
+        });
+    }
+
+    /**
+     * count 개 주문이 재고 부족으로 실패함 = 재고는 count - 1 이하
+     */
+    public void recordShort(Long itemId, int count){
+        long expiresAt = System.nanoTime() + ttlNanos;
+        entries.merge(itemId, new Entry(count - 1, expiresAt),
+                (old, shorter) -> old.upperBound <= shorter.upperBound ? new Entry(old.upperBound, expiresAt) : shorter);
+    }
+
+    @TransactionalEventListener
+    public void onOrderCancelled(OrderCancelledEvent event){
+        for(OrderLine line : event.getLines()){
+            raise(line.getItemId(), line.getCount());
+        }
+    }
+
+    /**
+     * 주문, 취소로 인한 변경은 주문 후 재고(recordStock), 취소 이벤트로 이미 반영한다.
+     */
+    @TransactionalEventListener
+    public void onStockChanged(StockChangedEvent event){
+        if(event.getCause() == StockChangedEvent.Cause.ITEM){
+            raise(event.getItemId(), event.getDelta());
+        }
+    }
+
+    public Map<String, Object> stats(){
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("lowStockItems", entries.size());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    public void clear(){
+        entries.clear();
+    }
+
+    private void put(Long itemId, int stock){
+        if(stock > lowStockThreshold){
+            entries.remove(itemId);
+        }else{
+            entries.put(itemId, new Entry(stock, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    private void raise(Long itemId, int delta){
+        entries.computeIfPresent(itemId, (id, entry) -> entry.upperBound + delta > lowStockThreshold
+                ? null : new Entry(entry.upperBound + delta, entry.expiresAt));
+    }
+
+    private static class Entry {
+        private final int upperBound;
+        private final long expiresAt;
+
+        Entry(int upperBound, long expiresAt) {
+            this.upperBound = upperBound;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.StockShard;
+import jpabook.jpashop.event.StockChangedEvent;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.StockShardRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 분할 재고
+ *
+ * 차감: 임의의 분할 row 하나를 조건부 update 한다. 부족하면 다음 row 로 넘어간다.
+ *  한 주문은 분할 row 하나만 잠그므로 구매자끼리 같은 상품 row 에서 줄을 서지 않는다.
+ * 어느 row 도 혼자 감당하지 못하면 상품과 모든 분할 row 를 잠그고 전체 재고에서 차감한 뒤 고르게 다시 나눈다.
+ * 넘어가기가 일어난 상품은 StockRebalanceJob 이 나중에 다시 나눈다.
+ * 잠금 순서는 항상 상품 row > 분할 row 다.
+ * 재고를 빼거나 더하면 StockChangedEvent(ORDER) 를 발행한다. (주문 저널이 재고를 다시 만들 수 있도록)
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class StockService {
+    private final ItemRepository itemRepository;
+    private final StockShardRepository stockShardRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Set<Long> lowItems = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 분할 재고 차감 (주문 트랜잭션 안에서 호출)
+     */
+    @Transactional
+    public void takeShardedStock(Item item, int count){
+        int shards = item.getStockShards();
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for(int i = 0; i < shards; i++){
+            if(stockShardRepository.tryTake(item.getId(), (start + i) % shards, count) == 1){
+                if(i > 0){
+                    lowItems.add(item.getId());
+                }
+                publishChanged(item.getId(), -count);
+                return;
+            }
+        }
+        redistribute(item.getId(), count);
+        publishChanged(item.getId(), -count);
+    }
+
+    /**
+     * 분할하지 않은 상품 재고 차감 (주문 트랜잭션 안에서 호출)
+     * 조건부 update 로 차감하고 item 은 DB 값으로 다시 읽힌다.
+     */
+    @Transactional
+    public void takeStock(Item item, int count){
+        if(itemRepository.removeStock(item.getId(), count) == 0){
+            throw new NotEnoughStockException("need more stock");
+        }
+        publishChanged(item.getId(), -count);
+    }
+
+    /**
+     * 재고 복구 (주문취소)
+     * 분할 row 에 더하지 못하면(그 사이 분할이 해제됨) 상품 재고에 더한다.
+     */
+    @Transactional
+    public void restock(Long itemId, int quantity){
+        long shards = stockShardRepository.countShards(itemId);
+        if(shards == 0 || stockShardRepository.add(itemId, ThreadLocalRandom.current().nextInt((int) shards), quantity) == 0){
+            itemRepository.addStock(itemId, quantity);
+        }
+        publishChanged(itemId, quantity);
+    }
+
+    @Transactional
+    public void enableSharding(Long itemId, int shards){
+        if(shards < 1){
+            throw new IllegalArgumentException("분할 수는 1 이상이어야 합니다.");
+        }
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if(item.isShardedStock()){
+            throw new IllegalStateException("이미 재고가 분할된 상품입니다.");
+        }
+        int total = item.getStockQuantity();
+        for(int shardNo = 0; shardNo < shards; shardNo++){
+            stockShardRepository.save(StockShard.create(itemId, shardNo, share(total, shards, shardNo)));
+        }
+        item.setStockQuantity(0);
+        item.setStockShards(shards);
+    }
+
+    @Transactional
+    public void disableSharding(Long itemId){
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if(!item.isShardedStock()){
+            return;
+        }
+        stockShardRepository.lockAll(itemId);
+        int sharded = stockShardRepository.findQuantities(itemId).stream().mapToInt(Integer::intValue).sum();
+        stockShardRepository.deleteAll(itemId);
+        item.setStockQuantity(item.getStockQuantity() + sharded);
+        item.setStockShards(0);
+        lowItems.remove(itemId);
+    }
+
+    /**
+     * 분할 재고를 고르게 다시 나눈다. 상품 row 에 복구된 재고도 함께 나눈다.
+     */
+    @Transactional
+    public void rebalance(Long itemId){
+        redistribute(itemId, 0);
+    }
+
+    /**
+     * 넘어가기가 일어난 상품 목록을 가져오고 비운다.
+     */
+    public List<Long> drainLowItems(){
+        List<Long> drained = new ArrayList<>();
+        for(Long itemId : lowItems){
+            if(lowItems.remove(itemId)){
+                drained.add(itemId);
+            }
+        }
+        return drained;
+    }
+
+    public List<Integer> findShardQuantities(Long itemId){
+        return stockShardRepository.findQuantities(itemId);
+    }
+
+    /**
+     * 상품 row, 모든 분할 row 를 잠그고 전체 재고에서 count 만큼 뺀 나머지를 고르게 나눈다.
+     * 그 사이 분할이 해제되었으면 분할 재고가 합쳐진 상품 재고에서 조건부 update 로 차감한다.
+     */
+    private void redistribute(Long itemId, int count){
+        Item item = itemRepository.findOneForUpdate(itemId);
+        if(!item.isShardedStock()){
+            if(count > 0 && itemRepository.removeStock(itemId, count) == 0){
+                throw new NotEnoughStockException("need more stock");
+            }
+            return;
+        }
+        stockShardRepository.lockAll(itemId);
+        List<Integer> quantities = stockShardRepository.findQuantities(itemId);
+        int total = item.getStockQuantity() + quantities.stream().mapToInt(Integer::intValue).sum();
+        if(total < count){
+            throw new NotEnoughStockException("need more stock");
+        }
+        int rest = total - count;
+        for(int shardNo = 0; shardNo < quantities.size(); shardNo++){
+            int share = share(rest, quantities.size(), shardNo);
+            if(quantities.get(shardNo) != share){
+                stockShardRepository.setQuantity(itemId, shardNo, share);
+            }
+        }
+        item.setStockQuantity(0);
+    }
+
+    private void publishChanged(Long itemId, int delta){
+        eventPublisher.publishEvent(new StockChangedEvent(itemId, delta, StockChangedEvent.Cause.ORDER));
+    }
+
+    private static int share(int total, int shards, int shardNo){
+        return total / shards + (shardNo < total % shards ? 1 : 0);
+    }
+}
@@ -0,0 +1,29 @@
+package jpabook.jpashop.startup;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 지연 초기화(fast-start)에서 제외할 빈
+ *
+ * @Scheduled 는 빈이 만들어질 때 등록되므로, 아무도 주입받지 않는 배치 빈(StockRebalanceJob, OrderArchiveJob 등)은
+ * 지연 초기화 모드에서 끝내 만들어지지 않고 스케줄도 돌지 않는다. @Scheduled 메서드가 있는 빈은 기동할 때 만든다.
+ */
+public class ScheduledBeanExcludeFilter implements LazyInitializationExcludeFilter {
+
+    @Override
+    public boolean isExcluded(String beanName, BeanDefinition beanDefinition, Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        Class<?> userType = ClassUtils.getUserClass(beanType);
+        return !MethodIntrospector.selectMethods(userType, (MethodIntrospector.MetadataLookup<Boolean>) method ->
+                AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+                        || AnnotatedElementUtils.hasAnnotation(method, Schedules.class) ? Boolean.TRUE : null).isEmpty();
+    }
+}
@@ -0,0 +1,38 @@
+package jpabook.jpashop.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * fast-start 용 초기데이터 스냅샷 생성
+ *
+ * 일반 기동(ddl-auto: create + InitDb)이 끝나면 H2 SCRIPT DROP 으로 스키마와 데이터를 gzip 스크립트로 내려받는다.
+ * H2 서버 기준 경로이므로 DB 서버와 같은 장비에서 사용한다.
+ */
+@Slf4j
+@Component
+@Profile("!fast-start")
+@ConditionalOnProperty(prefix = "jpashop.seed", name = "export", havingValue = "true")
+public class SeedSnapshotExporter {
+    private final JdbcTemplate jdbcTemplate;
+    private final String snapshot;
+
+    public SeedSnapshotExporter(DataSource dataSource, @Value("${jpashop.seed.snapshot:${user.home}/jpashop-seed.sql.gz}") String snapshot) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.snapshot = snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void export() {
+        jdbcTemplate.execute("SCRIPT DROP TO '" + snapshot.replace("'", "''") + "' COMPRESSION GZIP");
+        log.info("seed snapshot written to {}", snapshot);
+    }
+}
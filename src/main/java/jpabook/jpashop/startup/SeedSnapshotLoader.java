@@ -0,0 +1,42 @@
+package jpabook.jpashop.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * fast-start 프로필 초기데이터 적재
+ *
+ * ddl-auto 와 InitDb 대신 SeedSnapshotExporter 가 만든 스크립트(스키마 + 데이터)를
+ * H2 RUNSCRIPT 로 한번에 실행한다. 지연 초기화 모드에서도 DB 는 먼저 준비되어야 하므로 @Lazy(false)
+ */
+@Slf4j
+@Lazy(false)
+@Component("seedSnapshotLoader")
+@Profile("fast-start")
+public class SeedSnapshotLoader {
+    private final JdbcTemplate jdbcTemplate;
+    private final String snapshot;
+
+    public SeedSnapshotLoader(DataSource dataSource, @Value("${jpashop.seed.snapshot:${user.home}/jpashop-seed.sql.gz}") String snapshot) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.snapshot = snapshot;
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!Files.exists(Paths.get(snapshot))) {
+            log.warn("seed snapshot {} not found, starting with current schema", snapshot);
+            return;
+        }
+        jdbcTemplate.execute("RUNSCRIPT FROM '" + snapshot.replace("'", "''") + "' COMPRESSION GZIP");
+    }
+}
@@ -0,0 +1,84 @@
+package jpabook.jpashop.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.*;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 기동 단계별 소요시간 출력
+ *
+ * SpringApplication 에 리스너로 등록하고, 컨텍스트가 만들어지면 BeanPostProcessor 로도 등록해서
+ * JPA 메타모델 생성(entityManagerFactory)과 스키마/초기데이터(initDb, seedSnapshotLoader) 빈 초기화 시간을 잰다.
+ */
+@Slf4j
+public class StartupTimingReporter implements ApplicationListener<ApplicationEvent>, BeanPostProcessor {
+    private static final Map<String, String> TIMED_BEANS = Map.of(
+            "entityManagerFactory", "jpa metamodel",
+            "initDb", "schema and seed",
+            "seedSnapshotLoader", "schema and seed");
+
+    private final Map<String, Long> beanStarts = new ConcurrentHashMap<>();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private long startingAt;
+    private long environmentAt;
+    private long contextInitializedAt;
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        long now = System.nanoTime();
+        if (event instanceof ApplicationStartingEvent) {
+            startingAt = now;
+        } else if (event instanceof ApplicationEnvironmentPreparedEvent) {
+            environmentAt = now;
+            record("environment", environmentAt - startingAt);
+        } else if (event instanceof ApplicationContextInitializedEvent) {
+            contextInitializedAt = now;
+            ((ApplicationContextInitializedEvent) event).getApplicationContext()
+                    .getBeanFactory().addBeanPostProcessor(this);
+        } else if (event instanceof ContextRefreshedEvent) {
+            record("context refresh", now - contextInitializedAt);
+        } else if (event instanceof ApplicationReadyEvent) {
+            record("total", now - startingAt);
+            report();
+        }
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (TIMED_BEANS.containsKey(beanName)) {
+            beanStarts.put(beanName, System.nanoTime());
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Long start = beanStarts.remove(beanName);
+        if (start != null) {
+            record(TIMED_BEANS.get(beanName), System.nanoTime() - start);
+        }
+        return bean;
+    }
+
+    private synchronized void record(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    private synchronized void report() {
+        StringBuilder sb = new StringBuilder("startup timing");
+        Set<Map.Entry<String, Long>> entries = phases.entrySet();
+        for (Map.Entry<String, Long> entry : entries) {
+            sb.append(String.format("%n  %-16s %6d ms", entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue())));
+        }
+        log.info(sb.toString());
+    }
+}
@@ -0,0 +1,52 @@
+package jpabook.jpashop.analytics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void 추정값은_오차범위_안() throws Exception{
+        for(int distinct : new int[]{10, 1_000, 100_000}){
+            HyperLogLog sketch = new HyperLogLog(12);
+            for(long id = 1; id <= distinct; id++){
+                sketch.add(HyperLogLog.hash(id));
+                sketch.add(HyperLogLog.hash(id)); //중복은 한번만 센다.
+            }
+            double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+            assertTrue("distinct=" + distinct + " estimate=" + sketch.estimate(), error < 4 * sketch.standardError());
+        }
+    }
+
+    @Test
+    public void 합치기는_합집합() throws Exception{
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for(long id = 1; id <= 30_000; id++){
+            first.add(HyperLogLog.hash(id));
+        }
+        for(long id = 20_001; id <= 50_000; id++){
+            second.add(HyperLogLog.hash(id));
+        }
+
+        first.merge(second);
+
+        assertEquals(50_000, first.estimate(), 50_000 * 4 * first.standardError());
+    }
+
+    @Test
+    public void 저장형식_복원() throws Exception{
+        HyperLogLog sketch = new HyperLogLog(12);
+        for(long id = 1; id <= 5_000; id++){
+            sketch.add(HyperLogLog.hash(id));
+        }
+
+        byte[] bytes = sketch.toBytes();
+        HyperLogLog restored = HyperLogLog.fromBytes(bytes);
+
+        assertEquals("레지스터 6 bit", 1 + 4096 * 6 / 8, bytes.length);
+        assertEquals(sketch.estimate(), restored.estimate());
+        assertArrayEquals(bytes, restored.toBytes());
+    }
+}
@@ -0,0 +1,143 @@
+package jpabook.jpashop.push;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderChangeType;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"jpashop.change-feed.gap-timeout-ms=0", "jpashop.push.poll-interval=3600000", "jpashop.push.buffer-size=2"})
+@Transactional
+public class OrderPushBroadcasterTest {
+    @Autowired EntityManager em;
+    @Autowired OrderPushBroadcaster broadcaster;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+
+    @Test
+    public void 회원_변경종류별_구독() throws Exception{
+        //given
+        broadcaster.poll();
+        Member a = createMember("pushA");
+        Member b = createMember("pushB");
+        Book book = createBook();
+        broadcaster.subscribe(a.getId(), null, null);
+        broadcaster.subscribe(b.getId(), OrderChangeType.CANCELLED, null);
+        long sent = sent();
+
+        //when
+        orderService.cancelOrder(orderService.order(a.getId(), book.getId(), 1));
+        orderService.order(b.getId(), book.getId(), 1);
+        broadcaster.poll();
+
+        //then
+        assertEquals("A 는 주문, 취소 / B 는 취소만 받는다", sent + 2, waitSent(sent + 2));
+        assertEquals(2, broadcaster.stats().get("subscribers"));
+    }
+
+    /**
+     * 놓친 변경은 전송 스레드가 별도 트랜잭션으로 읽으므로 데이터가 커밋되어야 한다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 재연결하면_놓친_변경을_받는다() throws Exception{
+        //given
+        broadcaster.poll();
+        Long memberId = joinMember("pushReplay");
+        Long itemId = saveBook();
+        long lastEventId = (long) broadcaster.stats().get("cursor");
+        orderService.order(memberId, itemId, 1);
+        broadcaster.poll();
+        long sent = sent();
+
+        //when
+        broadcaster.subscribe(memberId, null, lastEventId);
+
+        //then
+        assertEquals(sent + 1, waitSent(sent + 1));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 밀린_구독자는_끊는다() throws Exception{
+        //given
+        broadcaster.poll();
+        Long memberId = joinMember("pushSlow");
+        Long itemId = saveBook();
+        long lastEventId = (long) broadcaster.stats().get("cursor");
+        long evicted = (long) broadcaster.stats().get("evicted");
+        for(int i = 0; i < 3; i++){
+            orderService.order(memberId, itemId, 1);
+        }
+        broadcaster.poll();
+
+        //when 재연결해서 buffer-size 보다 많이 밀린 변경을 다시 받으려고 하면
+        broadcaster.subscribe(memberId, null, lastEventId);
+
+        //then
+        for(int i = 0; i < 50 && (long) broadcaster.stats().get("evicted") == evicted; i++){
+            Thread.sleep(20);
+        }
+        assertEquals(evicted + 1, broadcaster.stats().get("evicted"));
+    }
+
+    private long sent() {
+        return (long) broadcaster.stats().get("sent");
+    }
+
+    private long waitSent(long expected) throws InterruptedException {
+        for(int i = 0; i < 50 && sent() < expected; i++){
+            Thread.sleep(20);
+        }
+        Thread.sleep(100);
+        return sent();
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("seoul", "street", "12345"));
+        em.persist(member);
+        return member;
+    }
+
+    private Long joinMember(String name) {
+        Member member = new Member();
+        member.setName(name + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        return memberService.join(member);
+    }
+
+    private Long saveBook() {
+        Book book = new Book();
+        book.setName("PUSH BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(10);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private Book createBook() {
+        Book book = new Book();
+        book.setName("PUSH BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        return book;
+    }
+}
@@ -0,0 +1,159 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderChange;
+import jpabook.jpashop.domain.OrderChangeType;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderChangeRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.service.ChangeFeedService.ChangeBatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = "jpashop.change-feed.gap-timeout-ms=0")
+@Transactional
+public class ChangeFeedServiceTest {
+    @Autowired EntityManager em;
+    @Autowired ChangeFeedService changeFeedService;
+    @Autowired OrderService orderService;
+    @Autowired DeliveryService deliveryService;
+    @Autowired OrderRepository orderRepository;
+    @Autowired OrderChangeRepository orderChangeRepository;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Test
+    public void 주문_취소_배송완료_변경피드() throws Exception{
+        //given
+        long cursor = lastCursor();
+        Member member = new Member();
+        member.setName("feed");
+        member.setAddress(new Address("seoul", "street", "12345"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("FEED BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        //when
+        Long cancelled = orderService.order(member.getId(), book.getId(), 1);
+        Long delivered = orderService.order(member.getId(), book.getId(), 1);
+        orderService.cancelOrder(cancelled);
+        Order order = orderRepository.findOne(delivered);
+        deliveryService.completeDelivery(order.getDelivery().getId());
+        deliveryService.completeDelivery(order.getDelivery().getId());
+
+        //then
+        ChangeBatch first = changeFeedService.findChanges(cursor, 3);
+        assertEquals(List.of(OrderChangeType.CREATED, OrderChangeType.CREATED, OrderChangeType.CANCELLED),
+                first.getChanges().stream().map(OrderChange::getType).collect(Collectors.toList()));
+        assertEquals(cancelled, first.getChanges().get(2).getOrderId());
+        assertTrue(first.isHasMore());
+
+        ChangeBatch second = changeFeedService.findChanges(first.getNextCursor(), 3);
+        assertEquals("배송완료는 한 번만 기록된다", 1, second.getChanges().size());
+        assertEquals(OrderChangeType.DELIVERED, second.getChanges().get(0).getType());
+        assertEquals(delivered, second.getChanges().get(0).getOrderId());
+        assertFalse(second.isHasMore());
+    }
+
+    /**
+     * 앞 번호가 뒷 번호보다 늦게 커밋되어도 cursor 가 앞 번호를 건너뛰지 않는다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 늦게_커밋된_앞번호도_순서대로_읽는다() throws Exception{
+        //given
+        ChangeFeedService feed = new ChangeFeedService(orderChangeRepository, 60_000, 7);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        OrderChange start = OrderChange.create(-1L, -1L, OrderChangeType.CREATED);
+        tx.executeWithoutResult(s -> orderChangeRepository.save(start));
+        long cursor = start.getSeq();
+
+        try {
+            //when
+            OrderChange late = OrderChange.create(-2L, -1L, OrderChangeType.CREATED);
+            OrderChange early = OrderChange.create(-3L, -1L, OrderChangeType.CREATED);
+            ChangeBatch beforeCommit = tx.execute(s -> {
+                orderChangeRepository.save(late);
+                em.flush();  //앞 번호를 받고 커밋하지 않은 채로
+                tx.executeWithoutResult(t -> orderChangeRepository.save(early));
+                return tx.execute(t -> feed.findChanges(cursor, 100));
+            });
+            ChangeBatch afterCommit = tx.execute(s -> feed.findChanges(cursor, 100));
+
+            //then
+            assertTrue("뒷 번호가 먼저 커밋되었다", early.getSeq() > late.getSeq());
+            assertTrue("앞 번호가 커밋되기 전에는 뒷 번호도 응답하지 않는다", beforeCommit.getChanges().isEmpty());
+            assertEquals(cursor, beforeCommit.getNextCursor());
+            assertEquals(List.of(late.getSeq(), early.getSeq()),
+                    afterCommit.getChanges().stream().map(OrderChange::getSeq).collect(Collectors.toList()));
+        } finally {
+            tx.executeWithoutResult(s -> em.createQuery("delete from OrderChange c where c.orderId < 0").executeUpdate());
+        }
+    }
+
+    /**
+     * 롤백된 번호는 처음 조회한 뒤 gap-timeout 이 지나면 건너뛴다.
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void 롤백된_번호는_대기시간_후_건너뛴다() throws Exception{
+        //given
+        ChangeFeedService feed = new ChangeFeedService(orderChangeRepository, 200, 7);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        OrderChange start = OrderChange.create(-1L, -1L, OrderChangeType.CREATED);
+        tx.executeWithoutResult(s -> orderChangeRepository.save(start));
+        long cursor = start.getSeq();
+
+        try {
+            tx.executeWithoutResult(s -> {
+                orderChangeRepository.save(OrderChange.create(-2L, -1L, OrderChangeType.CREATED));
+                em.flush();
+                s.setRollbackOnly();
+            });
+            OrderChange next = OrderChange.create(-3L, -1L, OrderChangeType.CREATED);
+            tx.executeWithoutResult(s -> orderChangeRepository.save(next));
+
+            //when
+            ChangeBatch first = tx.execute(s -> feed.findChanges(cursor, 100));
+            Thread.sleep(300);
+            ChangeBatch second = tx.execute(s -> feed.findChanges(cursor, 100));
+
+            //then
+            assertTrue("발견 직후에는 기다린다", first.getChanges().isEmpty());
+            assertEquals(List.of(next.getSeq()),
+                    second.getChanges().stream().map(OrderChange::getSeq).collect(Collectors.toList()));
+        } finally {
+            tx.executeWithoutResult(s -> em.createQuery("delete from OrderChange c where c.orderId < 0").executeUpdate());
+        }
+    }
+
+    private long lastCursor(){
+        long cursor = 0;
+        ChangeBatch batch;
+        do {
+            batch = changeFeedService.findChanges(cursor, 1000);
+            cursor = batch.getNextCursor();
+        } while(batch.isHasMore());
+        return cursor;
+    }
+}
@@ -0,0 +1,71 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.analytics.BestSeller;
+import jpabook.jpashop.analytics.Leaderboard;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.ItemSalesCount;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.ItemSalesCountRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 순위는 커밋 후 이벤트로 반영되므로 데이터가 커밋되어야 한다. (@Transactional 없음)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class LeaderboardTest {
+    @Autowired Leaderboard leaderboard;
+    @Autowired ItemSalesCountRepository itemSalesCountRepository;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 주문_취소_순위_체크포인트() throws Exception{
+        //given
+        Long memberId = createMember();
+        Book book = new Book();
+        book.setName("BEST SELLER");
+        book.setPrice(100);
+        book.setStockQuantity(1_000_000);
+        itemService.saveItem(book);
+
+        //when
+        orderService.order(memberId, book.getId(), 600_000);
+        Long cancelId = orderService.order(memberId, book.getId(), 100_000);
+        orderService.cancelOrder(cancelId);
+        leaderboard.publish();
+
+        //then
+        List<BestSeller> top = leaderboard.top();
+        assertEquals(book.getId(), top.get(0).getItemId());
+        assertEquals(1, top.get(0).getRank());
+        assertEquals("BEST SELLER", top.get(0).getName());
+        assertEquals("취소 수량은 빠진다", 600_000, top.get(0).getUnits());
+
+        leaderboard.checkpoint();
+        long saved = transactionTemplate.execute(s -> itemSalesCountRepository.findAll().stream()
+                .filter(c -> c.getItemId().equals(book.getId()))
+                .mapToLong(ItemSalesCount::getUnits)
+                .findFirst().orElse(-1));
+        assertEquals(600_000, saved);
+    }
+
+    private Long createMember(){
+        Member member = new Member();
+        member.setName("leaderboard-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        return memberService.join(member);
+    }
+}
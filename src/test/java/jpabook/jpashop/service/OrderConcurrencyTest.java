@@ -0,0 +1,158 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toMap;
+import static org.junit.Assert.*;
+
+/**
+ * 주문취소와 배송완료를 동시에 실행해도 둘 중 하나만 성공하는지 확인
+ * 트랜잭션이 실제로 커밋되어야 하므로 @Transactional 을 붙이지 않는다. 만든 데이터는 @After 에서 지운다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderConcurrencyTest {
+    private static final int ORDER_COUNT = 2000;
+    private static final int ITEM_COUNT = 10;
+    private static final int STOCK = 1000;
+    private static final int THREADS = 16;
+
+    @Autowired EntityManager em;
+    @Autowired OrderService orderService;
+    @Autowired DeliveryService deliveryService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    private Long memberId;
+    private final List<Long> itemIds = new ArrayList<>();
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @After
+    public void cleanUp(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            if(!orderIds.isEmpty()){
+                List<?> deliveryIds = em.createNativeQuery("select delivery_id from orders where order_id in (:orderIds)")
+                        .setParameter("orderIds", orderIds)
+                        .getResultList();
+                delete("delete from order_change where order_id in (:ids)", orderIds);
+                delete("delete from order_item where order_id in (:ids)", orderIds);
+                delete("delete from orders where order_id in (:ids)", orderIds);
+                if(!deliveryIds.isEmpty()){
+                    delete("delete from delivery where delivery_id in (:ids)", deliveryIds);
+                }
+            }
+            if(!itemIds.isEmpty()){
+                delete("delete from item where item_id in (:ids)", itemIds);
+            }
+            if(memberId != null){
+                delete("delete from member_order_stats where member_id in (:ids)", List.of(memberId));
+                delete("delete from member where member_id in (:ids)", List.of(memberId));
+            }
+        });
+    }
+
+    private void delete(String sql, List<?> ids){
+        em.createNativeQuery(sql).setParameter("ids", ids).executeUpdate();
+    }
+
+    @Test
+    public void 주문취소_배송완료_동시실행() throws Exception{
+        //given
+        Member member = new Member();
+        member.setName("stress-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        memberId = memberService.join(member);
+
+        for(int i = 0; i < ITEM_COUNT; i++){
+            Book book = new Book();
+            book.setName("STRESS BOOK " + i);
+            book.setPrice(1000);
+            book.setStockQuantity(STOCK);
+            itemService.saveItem(book);
+            itemIds.add(book.getId());
+        }
+
+        for(int i = 0; i < ORDER_COUNT; i++){
+            orderIds.add(orderService.order(memberId, itemIds.get(i % ITEM_COUNT), 1));
+        }
+        Map<Long, Long> deliveryIds = em.createQuery(
+                "select o.id, o.delivery.id from Order o where o.id in :orderIds", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList().stream()
+                .collect(toMap(r -> (Long) r[0], r -> (Long) r[1]));
+
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        AtomicInteger cancelled = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        for(Long orderId : orderIds){
+            tasks.add(() -> {
+                try {
+                    orderService.cancelOrder(orderId);
+                    cancelled.incrementAndGet();
+                    return true;
+                } catch (IllegalStateException e) {
+                    return false;
+                }
+            });
+            tasks.add(() -> {
+                boolean done = deliveryService.completeDelivery(deliveryIds.get(orderId));
+                if(done) completed.incrementAndGet();
+                return done;
+            });
+        }
+        Collections.shuffle(tasks);
+
+        //when
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for(Future<Boolean> future : executor.invokeAll(tasks)){
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        //then
+        assertEquals("주문마다 취소, 배송완료 중 하나만 성공해야 한다.", ORDER_COUNT, cancelled.get() + completed.get());
+        assertEquals("취소된 주문은 배송도 취소상태", (long) cancelled.get(),
+                countOrders(orderIds, OrderStatus.CANCEL, DeliveryStatus.CANCEL));
+        assertEquals("배송완료된 주문은 주문상태 유지", (long) completed.get(),
+                countOrders(orderIds, OrderStatus.ORDER, DeliveryStatus.COMP));
+
+        Long stock = em.createQuery("select sum(i.stockQuantity) from Item i where i.id in :itemIds", Long.class)
+                .setParameter("itemIds", itemIds)
+                .getSingleResult();
+        assertEquals("취소된 주문의 재고만 복구되어야 한다.", (long) ITEM_COUNT * STOCK - completed.get(), (long) stock);
+    }
+
+    private long countOrders(List<Long> orderIds, OrderStatus orderStatus, DeliveryStatus deliveryStatus) {
+        return em.createQuery(
+                "select count(o) from Order o join o.delivery d" +
+                        " where o.id in :orderIds and o.status = :orderStatus and d.status = :deliveryStatus", Long.class)
+                .setParameter("orderIds", orderIds)
+                .setParameter("orderStatus", orderStatus)
+                .setParameter("deliveryStatus", deliveryStatus)
+                .getSingleResult();
+    }
+}
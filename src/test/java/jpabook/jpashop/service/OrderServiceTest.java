@@ -1,12 +1,24 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.MemberOrderStats;
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderSearch;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.archive.OrderArchiveRepository;
+import jpabook.jpashop.repository.fetch.FetchPlan;
+import jpabook.jpashop.repository.order.query.MemberOrderHistoryDto;
+import jpabook.jpashop.repository.order.query.OrderViewDto;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +27,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -25,6 +40,10 @@ public class OrderServiceTest {
     @Autowired EntityManager em;
     @Autowired OrderService orderService;
     @Autowired OrderRepository orderRepository;
+    @Autowired DeliveryService deliveryService;
+    @Autowired StockService stockService;
+    @Autowired MemberService memberService;
+    @Autowired OrderArchiveRepository orderArchiveRepository;
 
     @Test
     public void 상품주문() throws Exception{
@@ -72,8 +91,256 @@ public class OrderServiceTest {
 
         //then
         Order getOrder = orderRepository.findOne(orderId);
+        Book getBook = em.find(Book.class, book.getId());
         assertEquals("주문상태 취소 CANCEL", OrderStatus.CANCEL, getOrder.getStatus());
-        assertEquals("주문취소 후 재고상태가 증가해야한다.", 10, book.getStockQuantity());
+        assertEquals("배송상태 취소 CANCEL", DeliveryStatus.CANCEL, getOrder.getDelivery().getStatus());
+        assertEquals("주문취소 후 재고상태가 증가해야한다.", 10, getBook.getStockQuantity());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void 배송완료_주문취소() throws Exception{
+        //given
+        Member member = createMember();
+        Book book = createBook("OLD JPA",10, 35000);
+        Long orderId = orderService.order(member.getId(), book.getId(), 3);
+        Order order = orderRepository.findOne(orderId);
+        deliveryService.completeDelivery(order.getDelivery().getId());
+
+        //when
+        orderService.cancelOrder(orderId);
+
+        //then
+        fail("배송완료된 주문은 취소되면 안된다.");
+    }
+
+    @Test
+    public void 주문_일괄취소() throws Exception{
+        //given
+        Member member = createMember();
+        Book book = createBook("OLD JPA",10, 35000);
+        Long orderId1 = orderService.order(member.getId(), book.getId(), 1);
+        Long orderId2 = orderService.order(member.getId(), book.getId(), 2);
+        Long orderId3 = orderService.order(member.getId(), book.getId(), 3);
+        deliveryService.completeDelivery(orderRepository.findOne(orderId3).getDelivery().getId());
+
+        //when
+        BulkCancelResult result = orderService.cancelOrders(List.of(orderId1, orderId2, orderId3));
+
+        //then
+        assertEquals("배송완료 전 주문만 취소", 2, result.getCancelled());
+        assertEquals("배송완료된 주문은 건너뛴다", 1, result.getSkippedDelivered());
+        assertEquals("취소된 주문 수량만큼 재고 복구", 7, em.find(Book.class, book.getId()).getStockQuantity());
+        assertEquals(OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals(OrderStatus.ORDER, orderRepository.findOne(orderId3).getStatus());
+    }
+
+    @Test
+    public void 주문목록_화면조회() throws Exception{
+        //given
+        Member member = createMember();
+        member.setName("viewMember");
+        Book book = createBook("OLD JPA",10, 35000);
+        Long orderId = orderService.order(member.getId(), book.getId(), 2);
+        em.flush();
+        em.clear();
+
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName("viewMember");
+        orderSearch.setOrderStatus(OrderStatus.ORDER);
+
+        //when
+        List<OrderViewDto> views = orderService.findOrderViews(orderSearch);
+
+        //then
+        assertEquals(1, views.size());
+        OrderViewDto view = views.get(0);
+        assertEquals(orderId, view.getId());
+        assertEquals("viewMember", view.getMemberName());
+        assertEquals("대표상품 이름", "OLD JPA", view.getItemName());
+        assertEquals(35000, view.getOrderPrice());
+        assertEquals(2, view.getCount());
+    }
+
+    @Test
+    public void fetch계획_적용() throws Exception{
+        //given
+        Member member = createMember();
+        Book book = createBook("OLD JPA",10, 35000);
+        orderService.order(member.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+
+        //when
+        List<Order> lazy = orderRepository.findAll(new OrderSearch(), FetchPlan.DEFAULT);
+        em.clear();
+        List<Order> fetched = orderRepository.findAll(new OrderSearch(), FetchPlan.ORDER_ALL);
+
+        //then
+        assertFalse("기본은 지연 로딩", Hibernate.isInitialized(lazy.get(0).getDelivery()));
+        assertEquals(lazy.size(), fetched.size());
+        for(Order order : fetched){
+            assertTrue(Hibernate.isInitialized(order.getMember()));
+            assertTrue(Hibernate.isInitialized(order.getDelivery()));
+            assertFalse("페이징 조회는 컬렉션을 fetch 하지 않고 batch fetch 로 가져온다", Hibernate.isInitialized(order.getOrderItems()));
+        }
+        assertEquals(FetchPlan.ORDER_MEMBER_DELIVERY, FetchPlan.ORDER_ALL.forPaging());
+        assertEquals(FetchPlan.DEFAULT, FetchPlan.MEMBER_ORDERS.forPaging());
+    }
+
+    @Test
+    public void 분할재고_주문취소() throws Exception{
+        //given
+        Member member = createMember();
+        Book book = createBook("OLD JPA",10, 35000);
+        em.flush();
+        stockService.enableSharding(book.getId(), 4);   //3,3,2,2
+
+        //when
+        Long orderId = orderService.order(member.getId(), book.getId(), 5);    //한 row 로 부족 > 전체 재분배
+
+        //then
+        assertEquals("주문수량만큼 분할 재고가 줄어야 한다", 5, shardedTotal(book.getId()));
+        orderService.cancelOrder(orderId);
+        assertEquals("취소하면 분할 재고로 복구", 10, shardedTotal(book.getId()));
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 분할재고_주문_초과() throws Exception{
+        Member member = createMember();
+        Book book = createBook("OLD JPA",10, 35000);
+        em.flush();
+        stockService.enableSharding(book.getId(), 4);
+
+        orderService.order(member.getId(), book.getId(), 11);
+    }
+
+    private int shardedTotal(Long itemId) {
+        return stockService.findShardQuantities(itemId).stream().mapToInt(Integer::intValue).sum()
+                + em.find(Book.class, itemId).getStockQuantity();
+    }
+
+    @Test
+    public void 회원_주문통계와_주문내역() throws Exception{
+        //given
+        Member member = createMember();
+        Book book = createBook("OLD JPA", 10, 1000);
+
+        //when
+        Long first = orderService.order(member.getId(), book.getId(), 1);
+        Long second = orderService.order(member.getId(), book.getId(), 2);
+        Long third = orderService.order(member.getId(), book.getId(), 3);
+        orderService.cancelOrder(second);
+
+        //then
+        MemberOrderStats stats = memberService.findOrderStats(member.getId());
+        assertEquals("취소된 주문은 빠진다", 2, stats.getOrderCount());
+        assertEquals(4000, stats.getTotalSpend());
+        assertEquals(orderRepository.findOne(third).getOrderDate().truncatedTo(ChronoUnit.MILLIS),
+                stats.getLastOrderDate().truncatedTo(ChronoUnit.MILLIS));
+
+        List<MemberOrderHistoryDto> page1 = orderService.findMemberOrderHistory(member.getId(), null, null, 2);
+        assertEquals(List.of(third, second), List.of(page1.get(0).getOrderId(), page1.get(1).getOrderId()));
+        assertEquals(OrderStatus.CANCEL, page1.get(1).getStatus());
+        assertEquals(2000, page1.get(1).getTotalPrice());
+        assertEquals(1, page1.get(1).getItemCount());
+
+        MemberOrderHistoryDto last = page1.get(1);
+        List<MemberOrderHistoryDto> page2 = orderService.findMemberOrderHistory(member.getId(), last.getOrderDate(), last.getOrderId(), 2);
+        assertEquals(1, page2.size());
+        assertEquals(first, page2.get(0).getOrderId());
+
+        orderArchiveRepository.moveToArchive(List.of(first));
+        List<MemberOrderHistoryDto> archived = orderService.findMemberOrderHistory(member.getId(), last.getOrderDate(), last.getOrderId(), 2);
+        assertEquals("보관된 주문도 주문내역에 남는다", List.of(first),
+                archived.stream().map(MemberOrderHistoryDto::getOrderId).collect(Collectors.toList()));
+        assertEquals(1000, archived.get(0).getTotalPrice());
+    }
+
+    @Test
+    public void 주문_SQL_수는_회원의_주문수와_무관() throws Exception{
+        //given
+        Book book = createBook("OLD JPA", 1000, 1000);
+        Member newcomer = createMember();
+        Member frequentBuyer = createMember();
+        for(int i = 0; i < 100; i++){
+            Delivery delivery = new Delivery();
+            delivery.setStatus(DeliveryStatus.READY);
+            em.persist(Order.createOrder(frequentBuyer, delivery, OrderItem.createOrderItem(book, 1000, 1)));
+        }
+        //회원 주문 통계 row 를 먼저 만들어 둔다.
+        orderService.order(newcomer.getId(), book.getId(), 1);
+        orderService.order(frequentBuyer.getId(), book.getId(), 1);
+
+        Statistics statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            //when
+            long newcomerStatements = statementsPerOrder(statistics, newcomer.getId(), book.getId());
+            long frequentBuyerStatements = statementsPerOrder(statistics, frequentBuyer.getId(), book.getId());
+
+            //then
+            assertEquals("주문이 많은 회원도 같은 수의 SQL 로 주문한다", newcomerStatements, frequentBuyerStatements);
+            assertFalse("회원 주문 목록을 읽지 않는다", Hibernate.isInitialized(em.find(Member.class, frequentBuyer.getId()).getOrders()));
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    private long statementsPerOrder(Statistics statistics, Long memberId, Long itemId) {
+        em.flush();
+        em.clear();
+        statistics.clear();
+        orderService.order(memberId, itemId, 1);
+        em.flush();
+        assertEquals("반대편 컬렉션을 읽지 않는다", 0, statistics.getCollectionLoadCount());
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    public void 주문_회원변경은_읽지_않은_주문목록을_건드리지_않는다() throws Exception{
+        //given
+        Book book = createBook("OLD JPA", 10, 1000);
+        Member previous = createMember();
+        Member next = createMember();
+        Long orderId = orderService.order(previous.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+
+        //when
+        Order order = orderRepository.findOne(orderId);
+        Member nextMember = em.find(Member.class, next.getId());
+        order.setMember(nextMember);
+
+        //then
+        assertFalse("새 회원의 주문 목록을 읽지 않는다", Hibernate.isInitialized(nextMember.getOrders()));
+        em.flush();
+        em.clear();
+        assertEquals(List.of(orderId), em.find(Member.class, next.getId()).getOrders().stream()
+                .map(Order::getId).collect(Collectors.toList()));
+        assertTrue(em.find(Member.class, previous.getId()).getOrders().isEmpty());
+    }
+
+    @Test
+    public void 주문_회원변경은_읽힌_주문목록을_함께_고친다() throws Exception{
+        //given
+        Book book = createBook("OLD JPA", 10, 1000);
+        Member previous = createMember();
+        Member next = createMember();
+        Long orderId = orderService.order(previous.getId(), book.getId(), 1);
+        em.flush();
+        em.clear();
+        Member previousMember = em.find(Member.class, previous.getId());
+        Member nextMember = em.find(Member.class, next.getId());
+        Order order = previousMember.getOrders().get(0);
+        nextMember.getOrders().size();
+
+        //when
+        order.setMember(nextMember);
+
+        //then
+        assertTrue("이전 회원 목록에서 빠진다", previousMember.getOrders().isEmpty());
+        assertEquals(List.of(order), nextMember.getOrders());
+        assertEquals(orderId, order.getId());
     }
 
     private Book createBook(String name, int quantity, int price) {
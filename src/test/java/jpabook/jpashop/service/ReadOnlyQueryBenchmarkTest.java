@@ -0,0 +1,151 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import org.hibernate.annotations.QueryHints;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 읽기 전용 조회 힙/할당 비교 (findAllWithItem 쿼리, 1만건 / 10만건)
+ *
+ * 오래 걸리므로 -Dbenchmark=true 일 때만 실행한다.
+ * ex) gradle test --tests '*ReadOnlyQueryBenchmarkTest' -Dbenchmark=true
+ *
+ * retained: 조회 결과와 영속성 컨텍스트가 살아있는 상태의 GC 후 힙 증가량
+ * allocated: 조회 + flush 동안 현재 스레드가 할당한 바이트
+ * flush: flush(dirty checking) 시간
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class ReadOnlyQueryBenchmarkTest {
+    private static final long ID_BASE = 1_000_000_000L;
+    private static final String JPQL = "select distinct o from Order o" +
+            " join fetch o.member" +
+            " join fetch o.delivery d" +
+            " join fetch o.orderItems oi" +
+            " join fetch oi.item";
+
+    @Autowired EntityManager em;
+
+    @Before
+    public void onlyWhenRequested() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void 읽기전용_조회_1만건() throws Exception{
+        compare(10_000);
+    }
+
+    @Test
+    public void 읽기전용_조회_10만건() throws Exception{
+        compare(100_000);
+    }
+
+    private void compare(int rows) {
+        insertOrders(rows);
+
+        //JIT, 커넥션 예열
+        measure(false);
+        measure(true);
+
+        Result regular = measure(false);
+        Result readOnly = measure(true);
+        System.out.printf("rows=%d regular[%s] readOnly[%s]%n", rows, regular, readOnly);
+
+        assertTrue("읽기 전용이면 스냅샷이 없어서 유지되는 힙이 작아야 한다", readOnly.retained < regular.retained);
+    }
+
+    private Result measure(boolean readOnly) {
+        em.clear();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long usedBefore = usedHeapAfterGc();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+
+        TypedQuery<Order> query = em.createQuery(JPQL, Order.class);
+        if (readOnly) {
+            query.setHint(QueryHints.READ_ONLY, true);
+        }
+        List<Order> result = query.getResultList();
+        long flushStart = System.nanoTime();
+        em.flush();
+        long flushNanos = System.nanoTime() - flushStart;
+
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        long retained = usedHeapAfterGc() - usedBefore;
+        Result measured = new Result(result.size(), retained, allocated, flushNanos);
+        em.clear();
+        return measured;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private void insertOrders(int rows) {
+        Member member = new Member();
+        member.setName("benchmark");
+        member.setAddress(new Address("seoul", "street", "12345"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("BENCHMARK BOOK");
+        book.setPrice(10000);
+        book.setStockQuantity(1);
+        em.persist(book);
+        em.flush();
+
+        em.createNativeQuery("insert into delivery (delivery_id, status, city, street, zipcode)" +
+                " select :base + x, 'READY', 'seoul', 'street', '12345' from system_range(1, :rows)")
+                .setParameter("base", ID_BASE).setParameter("rows", rows).executeUpdate();
+        em.createNativeQuery("insert into orders (order_id, order_date, status, member_id, delivery_id)" +
+                " select :base + x, current_timestamp, 'ORDER', :memberId, :base + x from system_range(1, :rows)")
+                .setParameter("base", ID_BASE).setParameter("rows", rows).setParameter("memberId", member.getId())
+                .executeUpdate();
+        em.createNativeQuery("insert into order_item (order_item_id, order_id, item_id, order_price, count)" +
+                " select :base + x, :base + x, :itemId, 10000, 1 from system_range(1, :rows)")
+                .setParameter("base", ID_BASE).setParameter("rows", rows).setParameter("itemId", book.getId())
+                .executeUpdate();
+        em.clear();
+    }
+
+    private static class Result {
+        final int orders;
+        final long retained;
+        final long allocated;
+        final long flushNanos;
+
+        Result(int orders, long retained, long allocated, long flushNanos) {
+            this.orders = orders;
+            this.retained = retained;
+            this.allocated = allocated;
+            this.flushNanos = flushNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("orders=%d retained=%,dKB allocated=%,dKB flush=%.1fms",
+                    orders, retained / 1024, allocated / 1024, flushNanos / 1e6);
+        }
+    }
+}
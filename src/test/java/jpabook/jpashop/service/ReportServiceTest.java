@@ -0,0 +1,80 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.report.ReportFormat;
+import jpabook.jpashop.report.ReportJob;
+import jpabook.jpashop.report.ReportService;
+import jpabook.jpashop.report.ReportStatus;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 리포트는 다른 스레드에서 조회하므로 데이터가 커밋되어야 한다. (@Transactional 없음)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ReportServiceTest {
+    @Autowired ReportService reportService;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+
+    @Test
+    public void 주문_리포트_생성() throws Exception{
+        //given
+        LocalDateTime from = LocalDateTime.now();
+        Member member = new Member();
+        member.setName("report-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        Long memberId = memberService.join(member);
+
+        Book book = new Book();
+        book.setName("REPORT, BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(100);
+        itemService.saveItem(book);
+
+        int orderCount = 7;
+        for(int i = 0; i < orderCount; i++){
+            orderService.order(memberId, book.getId(), 2);
+        }
+        LocalDateTime to = LocalDateTime.now();
+
+        //when
+        ReportJob job = reportService.submit(from, to, ReportFormat.GZIP);
+        for(int i = 0; i < 100 && (job.getStatus() == ReportStatus.QUEUED || job.getStatus() == ReportStatus.RUNNING); i++){
+            Thread.sleep(100);
+        }
+
+        //then
+        assertEquals(ReportStatus.DONE, job.getStatus());
+        assertEquals(100, job.getProgress());
+        assertEquals(orderCount, job.getOrdersWritten());
+        assertEquals(Files.size(job.getFile()), job.getBytes());
+
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(job.getFile())), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+        assertEquals("헤더 + 주문상품 행", orderCount + 1, lines.size());
+        assertTrue("쉼표가 들어간 값은 따옴표로 감싼다", lines.get(1).contains("\"REPORT, BOOK\""));
+        assertTrue("행 합계, 주문 합계", lines.get(1).endsWith(",1000,2,2000,2000"));
+    }
+}
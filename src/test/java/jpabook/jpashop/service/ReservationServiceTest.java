@@ -0,0 +1,137 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.reservation.Hold;
+import jpabook.jpashop.reservation.HoldState;
+import jpabook.jpashop.reservation.ReservationService;
+import jpabook.jpashop.reservation.StockLedger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * 예약 반영과 만료는 다른 스레드에서 하므로 데이터가 커밋되어야 한다. (@Transactional 없음)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"jpashop.reservation.enabled=true", "jpashop.reservation.hold-ttl-seconds=2"})
+public class ReservationServiceTest {
+    @Autowired ReservationService reservationService;
+    @Autowired StockLedger stockLedger;
+    @Autowired OrderRepository orderRepository;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired TransactionTemplate transactionTemplate;
+    @Autowired StockService stockService;
+
+    @Test
+    public void 예약_주문() throws Exception{
+        //given
+        Long memberId = createMember();
+        Book book = createBook(10);
+        Hold hold = reservationService.hold(book.getId(), 3);
+        assertEquals("예약한 만큼 예약 가능 수량이 준다.", Integer.valueOf(7), stockLedger.available(book.getId()));
+        waitUntil(() -> hold.getState() == HoldState.PERSISTED);
+        assertEquals("반영된 예약은 DB 재고에서 빠진다.", 7, stock(book.getId()));
+
+        //when
+        Long orderId = reservationService.order(memberId, hold.getId());
+
+        //then
+        int count = transactionTemplate.execute(status -> {
+            Order order = orderRepository.findOne(orderId);
+            return order.getOrderItems().get(0).getCount();
+        });
+        assertEquals(3, count);
+        assertEquals("예약 수량은 한번만 빠진다.", 7, stock(book.getId()));
+        assertEquals(Integer.valueOf(7), stockLedger.available(book.getId()));
+        assertEquals(HoldState.CONSUMED, hold.getState());
+    }
+
+    @Test
+    public void 예약_만료() throws Exception{
+        //given
+        Book book = createBook(10);
+        Hold hold = reservationService.hold(book.getId(), 4);
+        waitUntil(() -> hold.getState() == HoldState.PERSISTED);
+
+        //when
+        waitUntil(() -> hold.getState() == HoldState.RELEASED && stockLedger.stats().get("pendingReleases").equals(0));
+
+        //then
+        assertEquals(Integer.valueOf(10), stockLedger.available(book.getId()));
+        waitUntil(() -> stock(book.getId()) == 10);
+        try {
+            reservationService.order(createMember(), hold.getId());
+            fail("만료된 예약으로는 주문할 수 없다.");
+        } catch (IllegalStateException e) {
+            //ok
+        }
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 예약_재고_초과() throws Exception{
+        Book book = createBook(10);
+        reservationService.hold(book.getId(), 6);
+        reservationService.hold(book.getId(), 5);
+    }
+
+    @Test
+    public void 분할재고_예약() throws Exception{
+        //given
+        Book book = createBook(10);
+        stockService.enableSharding(book.getId(), 4);
+
+        //when
+        Hold hold = reservationService.hold(book.getId(), 3);
+
+        //then
+        assertEquals("분할 row 합계로 채운다.", Integer.valueOf(7), stockLedger.available(book.getId()));
+        waitUntil(() -> hold.getState() == HoldState.PERSISTED);
+        assertEquals("예약은 분할 row 에서 빠진다.", 7, shardedStock(book.getId()));
+        reservationService.release(hold.getId());
+        waitUntil(() -> shardedStock(book.getId()) == 10);
+    }
+
+    private int shardedStock(Long itemId){
+        return stock(itemId) + stockService.findShardQuantities(itemId).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        for(int i = 0; i < 100 && !condition.getAsBoolean(); i++){
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private int stock(Long itemId){
+        return itemService.findOne(itemId).getStockQuantity();
+    }
+
+    private Long createMember(){
+        Member member = new Member();
+        member.setName("hold-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        return memberService.join(member);
+    }
+
+    private Book createBook(int stockQuantity){
+        Book book = new Book();
+        book.setName("HOLD BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book;
+    }
+}
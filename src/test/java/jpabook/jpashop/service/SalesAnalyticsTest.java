@@ -0,0 +1,121 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.analytics.SalesAnalytics;
+import jpabook.jpashop.analytics.SalesDay;
+import jpabook.jpashop.analytics.SalesTotal;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.SalesRollup;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.event.OrderCancelledEvent;
+import jpabook.jpashop.event.OrderLine;
+import jpabook.jpashop.repository.SalesRollupRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 집계는 커밋 후 이벤트로 반영되므로 데이터가 커밋되어야 한다. (@Transactional 없음)
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SalesAnalyticsTest {
+    @Autowired SalesAnalytics salesAnalytics;
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired SalesRollupRepository salesRollupRepository;
+    @Autowired TransactionTemplate transactionTemplate;
+
+    @Test
+    public void 주문_취소_집계() throws Exception{
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(1500);
+        LocalDate today = LocalDate.now();
+
+        //when
+        orderService.order(memberId, itemId, 2);
+        Long cancelId = orderService.order(memberId, itemId, 3);
+        orderService.order(memberId, itemId, 4);
+        orderService.cancelOrder(cancelId);
+
+        //then
+        SalesDay day = salesAnalytics.itemSeries(itemId, today, today).get(0);
+        assertEquals("취소된 주문은 빠진다", 6, day.getUnits());
+        assertEquals(6 * 1500, day.getRevenue());
+
+        SalesTotal top = find(salesAnalytics.topItems(today.minusDays(6), today, 1000, false), itemId);
+        assertEquals(6 * 1500, top.getRevenue());
+    }
+
+    @Test
+    public void 재집계는_이벤트_집계와_같다() throws Exception{
+        //given
+        Long memberId = createMember();
+        Long itemId = createBook(700);
+        LocalDate today = LocalDate.now();
+        orderService.order(memberId, itemId, 1);
+        Long cancelId = orderService.order(memberId, itemId, 5);
+        orderService.cancelOrder(cancelId);
+        SalesDay before = salesAnalytics.itemSeries(itemId, today, today).get(0);
+
+        //when
+        salesAnalytics.backfill(today, today);
+
+        //then
+        SalesDay after = salesAnalytics.itemSeries(itemId, today, today).get(0);
+        assertEquals(before.getUnits(), after.getUnits());
+        assertEquals(before.getRevenue(), after.getRevenue());
+        assertEquals(700, after.getRevenue());
+    }
+
+    @Test
+    public void 보관기간_지난_취소는_저장된_집계에서_뺀다() throws Exception{
+        //given
+        Long itemId = createBook(1000);
+        orderService.order(createMember(), itemId, 1);  //오늘까지 보관 기간을 당긴다
+        LocalDate old = LocalDate.now().minusDays(salesAnalytics.getDays() + 10);
+        transactionTemplate.executeWithoutResult(s -> salesRollupRepository.saveValue(itemId, old, 5000, 5));
+
+        //when
+        salesAnalytics.onOrderCancelled(new OrderCancelledEvent(1L, 1L, old.atStartOfDay(),
+                List.of(new OrderLine(itemId, 1000, 2))));
+        salesAnalytics.persist();
+
+        //then
+        SalesRollup rollup = transactionTemplate.execute(s -> salesRollupRepository.findBetween(old, old).stream()
+                .filter(r -> r.getId().getItemId().equals(itemId)).findFirst().orElseThrow());
+        assertEquals(3, rollup.getUnits());
+        assertEquals(3000, rollup.getRevenue());
+    }
+
+    private SalesTotal find(List<SalesTotal> totals, Long itemId){
+        return totals.stream().filter(t -> t.getId().equals(itemId)).findFirst()
+                .orElseThrow(() -> new AssertionError("상위 상품에 없음 itemId=" + itemId));
+    }
+
+    private Long createMember(){
+        Member member = new Member();
+        member.setName("analytics-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        return memberService.join(member);
+    }
+
+    private Long createBook(int price){
+        Book book = new Book();
+        book.setName("ANALYTICS BOOK");
+        book.setPrice(price);
+        book.setStockQuantity(100);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+}
@@ -0,0 +1,132 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 품절 상품에 주문이 몰릴 때 주문 처리량 비교 (빠른 거절 vs 트랜잭션 안에서 실패)
+ * -Dbenchmark=true 일 때만 실행한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SoldOutBenchmarkTest {
+    private static final int BUYERS = 32;
+    private static final int ATTEMPTS_PER_BUYER = 2000;
+
+    @Autowired OrderService orderService;
+    @Autowired MemberService memberService;
+    @Autowired ItemService itemService;
+    @Autowired StockAvailability stockAvailability;
+
+    @Before
+    public void onlyWhenRequested() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @After
+    public void restore() {
+        stockAvailability.setEnabled(true);
+    }
+
+    @Test
+    public void 품절_주문폭주_처리량_비교() throws Exception{
+        Long memberId = createMember();
+        Long itemId = createBook();
+        //마지막 재고를 팔아서 품절
+        orderService.order(memberId, itemId, 1);
+
+        stockAvailability.setEnabled(false);
+        run(memberId, itemId, 8, 200);
+        Result transactional = run(memberId, itemId, BUYERS, ATTEMPTS_PER_BUYER);
+
+        stockAvailability.setEnabled(true);
+        stockAvailability.recordShort(itemId, 1);
+        run(memberId, itemId, 8, 200);
+        Result fastPath = run(memberId, itemId, BUYERS, ATTEMPTS_PER_BUYER);
+        System.out.printf("buyers=%d transactional[%s] fast-path[%s]%n", BUYERS, transactional, fastPath);
+
+        //then
+        assertEquals("재고는 그대로 0", 0, itemService.findOne(itemId).getStockQuantity());
+        assertTrue("빠른 거절 처리량이 더 높아야 한다", fastPath.throughput > transactional.throughput);
+    }
+
+    private Result run(Long memberId, Long itemId, int buyers, int attempts) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int b = 0; b < buyers; b++){
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(int i = 0; i < attempts; i++){
+                    try {
+                        orderService.order(memberId, itemId, 1);
+                        accepted.incrementAndGet();
+                    } catch (NotEnoughStockException e) {
+                        //품절
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures){
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        assertEquals("품절 상품은 주문되면 안 된다", 0, accepted.get());
+        return new Result(buyers * attempts, elapsed);
+    }
+
+    private Long createMember(){
+        Member member = new Member();
+        member.setName("sold-out-" + System.nanoTime());
+        member.setAddress(new Address("seoul", "street", "12345"));
+        return memberService.join(member);
+    }
+
+    private Long createBook(){
+        Book book = new Book();
+        book.setName("SOLD OUT BOOK");
+        book.setPrice(1000);
+        book.setStockQuantity(1);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private static class Result {
+        final int attempts;
+        final double seconds;
+        final double throughput;
+
+        Result(int attempts, long elapsedNanos) {
+            this.attempts = attempts;
+            this.seconds = elapsedNanos / 1e9;
+            this.throughput = attempts / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("attempts=%d %.2fs %.0f/s", attempts, seconds, throughput);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.repository.ItemRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 같은 상품 동시 구매 처리량 비교 (상품 row 하나 vs 분할 재고)
+ *
+ * 구매 트랜잭션 = 재고 차감 + 배송 row insert (주문 나머지 작업 대신)
+ * 재고 차감 후 커밋까지 row lock 을 잡고 있으므로 상품 row 하나면 구매가 줄을 선다.
+ * -Dbenchmark=true 일 때만 실행한다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class StockShardBenchmarkTest {
+    private static final int BUYERS = 64;
+    private static final int PURCHASES_PER_BUYER = 200;
+    private static final int SHARDS = 32;
+    private static final int STOCK = 1_000_000;
+
+    @Autowired EntityManager em;
+    @Autowired ItemService itemService;
+    @Autowired ItemRepository itemRepository;
+    @Autowired StockService stockService;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    @Before
+    public void onlyWhenRequested() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void 동시구매_처리량_비교() throws Exception{
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Long singleId = createBook("SINGLE ROW BOOK");
+        Long shardedId = createBook("SHARDED BOOK");
+        stockService.enableSharding(shardedId, SHARDS);
+
+        //JIT 예열
+        run(tx, itemId -> takeSingleRow(itemId), singleId, 8, 50);
+        run(tx, itemId -> stockService.takeShardedStock(itemRepository.findOne(itemId), 1), shardedId, 8, 50);
+
+        Result single = run(tx, itemId -> takeSingleRow(itemId), singleId, BUYERS, PURCHASES_PER_BUYER);
+        Result sharded = run(tx, itemId -> stockService.takeShardedStock(itemRepository.findOne(itemId), 1), shardedId, BUYERS, PURCHASES_PER_BUYER);
+        System.out.printf("buyers=%d single[%s] sharded(%d)[%s]%n", BUYERS, single, SHARDS, sharded);
+
+        //then
+        int expectedSold = 8 * 50 + BUYERS * PURCHASES_PER_BUYER;
+        assertEquals("상품 row 재고", STOCK - expectedSold, (int) tx.execute(s -> itemRepository.findOne(singleId).getStockQuantity()));
+        int shardedTotal = tx.execute(s -> itemRepository.findOne(shardedId).getStockQuantity()
+                + stockService.findShardQuantities(shardedId).stream().mapToInt(Integer::intValue).sum());
+        assertEquals("분할 재고 합계가 정확해야 한다", STOCK - expectedSold, shardedTotal);
+        assertTrue("분할 재고 처리량이 더 높아야 한다", sharded.throughput > single.throughput);
+    }
+
+    private void takeSingleRow(Long itemId){
+        int updated = em.createQuery(
+                "update Item i set i.stockQuantity = i.stockQuantity - 1" +
+                        " where i.id = :itemId and i.stockQuantity >= 1")
+                .setParameter("itemId", itemId)
+                .executeUpdate();
+        if(updated == 0){
+            throw new NotEnoughStockException("need more stock");
+        }
+    }
+
+    private Result run(TransactionTemplate tx, Consumer<Long> take, Long itemId, int buyers, int purchases) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for(int b = 0; b < buyers; b++){
+            futures.add(executor.submit(() -> {
+                start.await();
+                for(int i = 0; i < purchases; i++){
+                    try {
+                        tx.executeWithoutResult(s -> {
+                            take.accept(itemId);
+                            Delivery delivery = new Delivery();
+                            delivery.setStatus(DeliveryStatus.READY);
+                            em.persist(delivery);
+                            em.flush();
+                        });
+                    } catch (RuntimeException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for(Future<?> future : futures){
+            future.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        assertEquals(0, failures.get());
+        return new Result(buyers * purchases, elapsed);
+    }
+
+    private Long createBook(String name){
+        Book book = new Book();
+        book.setName(name);
+        book.setPrice(1000);
+        book.setStockQuantity(STOCK);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+
+    private static class Result {
+        final int purchases;
+        final double seconds;
+        final double throughput;
+
+        Result(int purchases, long elapsedNanos) {
+            this.purchases = purchases;
+            this.seconds = elapsedNanos / 1e9;
+            this.throughput = purchases / seconds;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("purchases=%d %.2fs %.0f/s", purchases, seconds, throughput);
+        }
+    }
+}
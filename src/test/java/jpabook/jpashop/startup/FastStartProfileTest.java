@@ -0,0 +1,34 @@
+package jpabook.jpashop.startup;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static org.junit.Assert.*;
+
+/**
+ * fast-start 는 빈을 지연 초기화하지만 스케줄 작업 빈은 기동할 때 만들어져야 한다.
+ * 테스트에는 스냅샷이 없으므로 스키마는 ddl-auto 로 만든다.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create",
+        "jpashop.seed.snapshot=${java.io.tmpdir}/jpashop-fast-start-no-seed.sql.gz",
+        "jpashop.archive.horizon-days=90",
+        "jpashop.delivery-job.inbox=${java.io.tmpdir}/jpashop-fast-start-inbox"})
+@ActiveProfiles("fast-start")
+public class FastStartProfileTest {
+    @Autowired ConfigurableApplicationContext context;
+
+    @Test
+    public void 지연_초기화에서도_스케줄_빈은_생성() throws Exception{
+        for(String beanName : new String[]{"stockRebalanceJob", "deliveryCompletionJob", "orderArchiveJob", "reportService"}){
+            assertTrue(beanName + " 이 기동할 때 만들어져야 한다.",
+                    context.getBeanFactory().containsSingleton(beanName));
+        }
+    }
+}